@@ -0,0 +1,58 @@
+// Benchmarks for the Complex arithmetic the original kernel was
+// built on.
+
+package mandel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComplexBenchmark {
+
+    Complex     a;
+    Complex     b;
+
+
+    @Setup
+    public void setup() {
+        a = new Complex(-0.75, 0.1);
+        b = new Complex(0.3, -0.6);
+    }
+
+
+    @Benchmark
+    public Complex times() {
+        return a.times(b);
+    }
+
+    @Benchmark
+    public Complex plus() {
+        return a.plus(b);
+    }
+
+    @Benchmark
+    public double norm2() {
+        return a.norm2();
+    }
+
+    // One step of the original kernel: v = v.times(v).plus(pt)
+    @Benchmark
+    public Complex squarePlus() {
+        return a.times(a).plus(b);
+    }
+}
@@ -0,0 +1,84 @@
+// Benchmarks for the escape time kernel on single points.
+//
+// interior is in the period 3 bulb, so only cycle detection can cut
+// it short; cardioid is caught by the closed form test; boundary is
+// in seahorse valley and runs to the limit; escape leaves at once.
+// complexObjects is the original kernel, which made two Complex
+// objects per iteration, kept here as the baseline.
+
+package mandel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EscapeBenchmark {
+
+    @Param({"interior", "cardioid", "boundary", "escape"})
+    String          point;
+
+    @Param({"1000"})
+    int             limit;
+
+    @Param({"true", "false"})
+    boolean         shortcuts;
+
+    MandelRenderer  renderer;
+    double          cr;
+    double          ci;
+    Complex         pt;
+
+
+    @Setup
+    public void setup() {
+        switch (point) {
+            case "interior": cr = -0.1226; ci = 0.7449; break;
+            case "cardioid": cr = -0.1; ci = 0.1; break;
+            case "boundary": cr = -0.743643887037151; ci = 0.131825904205330; break;
+            default: cr = 1.5; ci = 1.5; break;
+        }
+
+        pt = new Complex(cr, ci);
+        renderer = new MandelRenderer(1, 1);
+        renderer.setLimit(limit);
+        renderer.setCardioidCheck(shortcuts);
+        renderer.setPeriodicityCheck(shortcuts);
+    }
+
+
+    @Benchmark
+    public int kernel() {
+        return renderer.escapeVelocity(cr, ci);
+    }
+
+
+    @Benchmark
+    public int complexObjects() {
+        Complex v = new Complex(pt);
+        int     orbits = 0;
+
+        while (v.norm2() <= 4.0 && orbits < limit)
+        {
+            v = v.times(v).plus(pt);
+            orbits += 1;
+        }
+
+        return orbits;
+    }
+}
@@ -0,0 +1,124 @@
+// Benchmarks for a whole frame: the subdivision engine, sequential
+// and fork/join, and the boundary tracing engine, against
+// evaluating every pixel.
+//
+// The viewports are the default view from Mandel.main, seahorse
+// valley, and a deep zoom near the edge of double precision.
+
+package mandel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RenderBenchmark {
+
+    @Param({"default", "seahorse", "deep"})
+    String              view;
+
+    @Param({"256"})
+    int                 size;
+
+    MandelRenderer      renderer;
+    ParallelRenderer    parallel;
+    RenderEngine        tracer;
+
+
+    // Upper left and lower right corners and the iteration limit
+    // that shows each view properly.
+    static Object[] viewport(String name) {
+        switch (name) {
+            case "seahorse":
+                return new Object[] { new Complex(-0.76, 0.13), new Complex(-0.73, 0.10), 2000 };
+            case "deep":
+                return new Object[] { new Complex(-0.743643887037151 - 2.0e-12, 0.131825904205330 + 2.0e-12),
+                                      new Complex(-0.743643887037151 + 2.0e-12, 0.131825904205330 - 2.0e-12), 5000 };
+            default:
+                return new Object[] { new Complex(-2.1, 2.1), new Complex(2.1, -2.1), 256 };
+        }
+    }
+
+
+    @Setup
+    public void setup() {
+        Object  v[] = viewport(view);
+
+        renderer = new MandelRenderer(size, size);
+        renderer.setLimit((Integer) v[2]);
+        renderer.initialize((Complex) v[0], (Complex) v[1]);
+
+        // bruteForce goes straight to escapeAt, so pick the kernel
+        // drawPicture would use for this view, or the deep view would
+        // be timed in plain doubles
+        renderer.choosePrecision();
+
+        parallel = new ParallelRenderer(size, size);
+        parallel.setLimit((Integer) v[2]);
+        parallel.initialize((Complex) v[0], (Complex) v[1]);
+
+        tracer = new BoundaryTracer(size, size);
+        tracer.setLimit((Integer) v[2]);
+        tracer.initialize((Complex) v[0], (Complex) v[1]);
+    }
+
+
+    @TearDown
+    public void tearDown() {
+        parallel.shutdown();
+    }
+
+
+    @Benchmark
+    public int[] subdivision() {
+        renderer.clear();
+        renderer.drawPicture();
+        return renderer.counts;
+    }
+
+
+    @Benchmark
+    public int[] parallelSubdivision() {
+        parallel.clear();
+        parallel.drawPicture();
+        return parallel.counts;
+    }
+
+
+    @Benchmark
+    public int boundaryTrace() {
+        tracer.clear();
+        tracer.drawPicture();
+        return tracer.count(size / 2, size / 2);
+    }
+
+
+    @Benchmark
+    public int[] bruteForce() {
+        int     counts[] = renderer.counts;
+
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                counts[y * size + x] = renderer.escapeAt(x, y);
+            }
+        }
+
+        return counts;
+    }
+}
@@ -0,0 +1,79 @@
+// Benchmarks for the vector kernel against the scalar one, over
+// every row of a frame, with and without cycle detection.  With it,
+// lanes still running after VectorKernel.HANDOFF_ITERATIONS are
+// finished by the scalar kernel.
+//
+// The fork is started with the vector module added.
+
+package mandel;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class VectorBenchmark {
+
+    @Param({"default", "seahorse"})
+    String          view;
+
+    @Param({"256"})
+    int             size;
+
+    @Param({"true", "false"})
+    boolean         periodicity;
+
+    MandelRenderer  renderer;
+
+
+    @Setup
+    public void setup() {
+        Object  v[] = RenderBenchmark.viewport(view);
+
+        renderer = new MandelRenderer(size, size);
+        renderer.setLimit((Integer) v[2]);
+        renderer.setPeriodicityCheck(periodicity);
+        renderer.initialize((Complex) v[0], (Complex) v[1]);
+    }
+
+
+    @Benchmark
+    public int scalar() {
+        int     sum = 0;
+
+        for (int j = 0; j < size; j++) {
+            for (int i = 0; i < size; i++) {
+                sum += renderer.escapeAt(i, j);
+            }
+        }
+
+        return sum;
+    }
+
+
+    @Benchmark
+    public int[] vector() {
+        renderer.clear();
+
+        for (int j = 0; j < size; j++) {
+            VectorKernel.escapeStrip(renderer, 0, j, 1, 0, size);
+        }
+
+        return renderer.counts;
+    }
+}
@@ -0,0 +1,201 @@
+// Boundary tracing engine.
+//
+// Instead of splitting rectangles, follow the edges between areas
+// of equal escape count.  Every pixel on the edge of the picture
+// goes on a queue, and so does every pixel where the count changes
+// along rows and columns SEED_SPACING apart, since in a zoomed out
+// view the areas are rings that never reach the edge.  A pixel taken off the queue is compared with
+// its four neighbours, evaluating them if need be, and wherever a
+// neighbour differs both sides of that edge are queued, along with
+// the diagonal neighbours next to it.  When the queue runs dry
+// every area of equal count is closed off by evaluated pixels, so
+// whatever is left can be filled in a row at a time from the pixel
+// to its left.  Like subdivision this relies on the level sets
+// being connected, but it only evaluates pixels next to an edge,
+// however oddly shaped the areas are.
+//
+// The view, kernels, symmetry, panning and raiseLimit all come
+// from MandelRenderer; only the way a region gets filled in is
+// different.  There is no fork/join version, and distance fill and
+// the vector kernel are not used.
+
+package mandel;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+
+public class BoundaryTracer extends MandelRenderer {
+
+    static final int    SEED_SPACING = 32;
+
+    int         queue[];        // offsets of pixels waiting to be scanned
+    boolean     queued[];       // true once a pixel has been put on the queue
+    int         head;
+    int         tail;
+
+
+    public BoundaryTracer(int w, int h) {
+        super(w, h);
+        queue = new int [w * h];
+        queued = new boolean [w * h];
+        head = 0;
+        tail = 0;
+    }
+
+
+    void renderPicture() {
+        trace(new Rectangle(0, 0, width, height));
+    }
+
+
+    // Traced tiles can fill a little differently from subdivided ones.
+    int cacheVariant() {
+        return super.cacheVariant() | VARIANT_TRACED;
+    }
+
+
+    public void renderRegion(Rectangle r) {
+        trace(r);
+    }
+
+
+    // Fill in every pixel of r by tracing.  Only pixels inside r are
+    // looked at, so r can be any part of the picture.
+    void trace(Rectangle r) {
+        int     x0 = r.x;
+        int     y0 = r.y;
+        int     x1 = r.x + r.width - 1;
+        int     y1 = r.y + r.height - 1;
+
+        if (r.width <= 0 || r.height <= 0)
+        {
+            return;
+        }
+
+        for (int y = y0; y <= y1; y++) {
+            Arrays.fill(queued, y * width + x0, y * width + x1 + 1, false);
+        }
+
+        head = 0;
+        tail = 0;
+
+        long    start = startClock();
+
+        for (int x = x0; x <= x1; x++) {
+            add(x, y0);
+            add(x, y1);
+        }
+
+        for (int y = y0 + 1; y < y1; y++) {
+            add(x0, y);
+            add(x1, y);
+        }
+
+        for (int y = y0 + SEED_SPACING; y < y1; y += SEED_SPACING) {
+            seed(x0, y, 1, 0, r.width);
+        }
+
+        for (int x = x0 + SEED_SPACING; x < x1; x += SEED_SPACING) {
+            seed(x, y0, 0, 1, r.height);
+        }
+
+        while (head < tail) {
+            if (cancelled())
+            {
+                return;
+            }
+
+            int     p = queue[head++];
+
+            scan(p % width, p / width, x0, y0, x1, y1);
+        }
+
+        boundaryDone(start);
+        start = startClock();
+
+        int     filled = 0;
+
+        for (int y = y0; y <= y1; y++) {
+            for (int p = y * width + x0 + 1; p <= y * width + x1; p++) {
+                if (counts[p] == UNKNOWN)
+                {
+                    counts[p] = counts[p - 1];
+                    filled++;
+                }
+            }
+        }
+
+        if (stats != null)
+        {
+            stats.pixelsFilled.add(filled);
+        }
+
+        fillDone(start);
+
+        if (listener != null)
+        {
+            listener.subImageCompleted(new SubImage(r));
+        }
+    }
+
+
+    // Look at the neighbours of (x, y) and queue the ones on the
+    // other side of an edge.  Diagonals are queued next to an edge
+    // so that the trace can turn corners.
+    void scan(int x, int y, int x0, int y0, int x1, int y1) {
+        int         center = load(x, y);
+        boolean     ll = x > x0;
+        boolean     rr = x < x1;
+        boolean     uu = y > y0;
+        boolean     dd = y < y1;
+        boolean     l = ll && load(x - 1, y) != center;
+        boolean     r = rr && load(x + 1, y) != center;
+        boolean     u = uu && load(x, y - 1) != center;
+        boolean     d = dd && load(x, y + 1) != center;
+
+        if (l) add(x - 1, y);
+        if (r) add(x + 1, y);
+        if (u) add(x, y - 1);
+        if (d) add(x, y + 1);
+
+        if (uu && ll && (l || u)) add(x - 1, y - 1);
+        if (uu && rr && (r || u)) add(x + 1, y - 1);
+        if (dd && ll && (l || d)) add(x - 1, y + 1);
+        if (dd && rr && (r || d)) add(x + 1, y + 1);
+    }
+
+
+    // Evaluate n pixels from (x, y) in steps of (dx, dy) and queue
+    // the pixels on both sides of every change of count.
+    void seed(int x, int y, int dx, int dy, int n) {
+        int     last = load(x, y);
+
+        for (int k = 1; k < n; k++) {
+            int     c = load(x + k * dx, y + k * dy);
+
+            if (c != last)
+            {
+                add(x + (k - 1) * dx, y + (k - 1) * dy);
+                add(x + k * dx, y + k * dy);
+                last = c;
+            }
+        }
+    }
+
+
+    int load(int x, int y) {
+        evaluate(x, y);
+        return counts[y * width + x];
+    }
+
+
+    void add(int x, int y) {
+        int     p = y * width + x;
+
+        if (!queued[p])
+        {
+            queued[p] = true;
+            queue[tail++] = p;
+        }
+    }
+}
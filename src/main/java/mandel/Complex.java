@@ -5,6 +5,7 @@
 // Modification History
 //      January 3, 2018     BA      Initial Draft
 
+package mandel;
 
 import static java.lang.Math.sqrt;
 import static java.lang.Math.pow;
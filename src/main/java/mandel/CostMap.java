@@ -0,0 +1,166 @@
+// A rough guess at how much work each part of a picture will take,
+// so that the expensive tiles can be handed out first and split up.
+//
+// The picture is cut into square cells and one point is looked at
+// in the middle of each: either by running the kernel on it (a probe
+// pass, a few thousand points for a whole frame) or by reading the
+// count at the same place in the previous frame.  Subdivision only
+// evaluates the edge of a cell the same count runs right across, but
+// every pixel of a cell the boundary of the set passes through, so a
+// cell whose count differs from a neighbour's is charged for all its
+// pixels and any other cell only for its edge.
+
+package mandel;
+
+public class CostMap {
+
+    public static final int     DEFAULT_CELL = 32;
+
+    int         cell;
+    int         cols;
+    int         rows;
+    int         counts[];
+    double      work[];         // iterations one pixel of the cell takes
+    double      cost[];
+
+
+    CostMap(int width, int height, int c) {
+        cell = c;
+        cols = (width + c - 1) / c;
+        rows = (height + c - 1) / c;
+        counts = new int [cols * rows];
+        work = new double [cols * rows];
+        cost = new double [cols * rows];
+    }
+
+
+    // Probe the middle of each cell of the view from ul to lr,
+    // width x height pixels.
+    public static CostMap probe(Complex ul, Complex lr, int width, int height, int limit, int cell) {
+        CostMap         m = new CostMap(width, height, cell);
+        MandelRenderer  kernel = kernel(limit);
+        double          hRe = (lr.real() - ul.real()) / width;
+        double          vIm = (lr.imag() - ul.imag()) / height;
+
+        for (int j = 0; j < m.rows; j++) {
+            for (int i = 0; i < m.cols; i++) {
+                m.probeCell(kernel, i, j, ul.real() + m.middle(i, width) * hRe, ul.imag() + m.middle(j, height) * vIm);
+            }
+        }
+
+        m.finish();
+        return m;
+    }
+
+
+    // Read the costs from the previous frame, whose counts are in
+    // prev and which showed the view from prevUL to prevLR.  Cells
+    // that were outside it are probed.
+    public static CostMap fromFrame(CountFile prev, Complex prevUL, Complex prevLR,
+                                    Complex ul, Complex lr, int width, int height, int limit, int cell) {
+        CostMap         m = new CostMap(width, height, cell);
+        MandelRenderer  kernel = null;
+        double          hRe = (lr.real() - ul.real()) / width;
+        double          vIm = (lr.imag() - ul.imag()) / height;
+        double          prevHRe = (prevLR.real() - prevUL.real()) / prev.getWidth();
+        double          prevVIm = (prevLR.imag() - prevUL.imag()) / prev.getHeight();
+
+        for (int j = 0; j < m.rows; j++) {
+            for (int i = 0; i < m.cols; i++) {
+                double  re = ul.real() + m.middle(i, width) * hRe;
+                double  im = ul.imag() + m.middle(j, height) * vIm;
+                long    px = (long) Math.floor((re - prevUL.real()) / prevHRe);
+                long    py = (long) Math.floor((im - prevUL.imag()) / prevVIm);
+                int     k = j * m.cols + i;
+
+                if (px >= 0 && px < prev.getWidth() && py >= 0 && py < prev.getHeight())
+                {
+                    m.counts[k] = prev.get((int) px, (int) py);
+                    m.work[k] = Math.max(1, m.counts[k]);
+                }
+                else
+                {
+                    if (kernel == null)
+                    {
+                        kernel = kernel(limit);
+                    }
+
+                    m.probeCell(kernel, i, j, re, im);
+                }
+            }
+        }
+
+        m.finish();
+        return m;
+    }
+
+
+    static MandelRenderer kernel(int limit) {
+        MandelRenderer  r = new MandelRenderer(1, 1);
+
+        r.setLimit(limit);
+        r.setStats(new RenderStats());
+        return r;
+    }
+
+
+    // Pixel in the middle of cell i along a side size pixels long.
+    double middle(int i, int size) {
+        return Math.min(i * cell + cell / 2, size - 1);
+    }
+
+
+    void probeCell(MandelRenderer kernel, int i, int j, double re, double im) {
+        long    before = kernel.getStats().getIterations();
+        int     k = j * cols + i;
+
+        counts[k] = kernel.escapeVelocity(re, im);
+        work[k] = Math.max(1, kernel.getStats().getIterations() - before);
+    }
+
+
+    void finish() {
+        for (int j = 0; j < rows; j++) {
+            for (int i = 0; i < cols; i++) {
+                int     k = j * cols + i;
+                int     c = counts[k];
+                boolean edge = (i > 0 && counts[k - 1] != c) || (i + 1 < cols && counts[k + 1] != c)
+                               || (j > 0 && counts[k - cols] != c) || (j + 1 < rows && counts[k + cols] != c);
+
+                cost[k] = work[k] * (edge ? cell * cell : 4 * cell);
+            }
+        }
+    }
+
+
+    // The cost of the w x h pixels at (x, y), counting each cell in
+    // proportion to how much of it they cover.
+    public double cost(int x, int y, int w, int h) {
+        double  sum = 0.0;
+
+        for (int j = y / cell; j * cell < y + h && j < rows; j++) {
+            int     top = Math.max(y, j * cell);
+            int     bottom = Math.min(y + h, j * cell + cell);
+
+            for (int i = x / cell; i * cell < x + w && i < cols; i++) {
+                int     left = Math.max(x, i * cell);
+                int     right = Math.min(x + w, i * cell + cell);
+
+                sum += cost[j * cols + i] * (right - left) * (bottom - top) / (cell * cell);
+            }
+        }
+
+        return sum;
+    }
+
+
+    public double total() {
+        double  sum = 0.0;
+
+        for (double c : cost) {
+            sum += c;
+        }
+
+        return sum;
+    }
+}
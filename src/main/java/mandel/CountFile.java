@@ -0,0 +1,112 @@
+// Escape counts for a picture too big for the heap, kept in a file
+// and mapped into memory.
+//
+// The file holds one int per pixel in native byte order, row after
+// row, so pixel (x, y) is at byte 4 * (y * width + x); a long offset,
+// so the picture may have more than 2^31 pixels.  A single mapping
+// cannot be larger than 2 GB, so the file is mapped in bands of
+// whole rows.  The operating system pages bands in and out; the heap
+// only ever holds the mapping objects.
+
+package mandel;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+public class CountFile implements Closeable {
+
+    // Largest band mapped at once, in bytes.
+    static final long   BAND_BYTES = 1L << 30;
+
+    int                 width;
+    int                 height;
+    int                 bandRows;
+    FileChannel         channel;
+    MappedByteBuffer    maps[];
+    IntBuffer           bands[];
+
+
+    // Open or create the file at path for a w x h picture.  An
+    // existing file is resized to fit, keeping what it holds.
+    public CountFile(Path path, int w, int h) throws IOException {
+        if (w <= 0 || h <= 0 || 4L * w > BAND_BYTES)
+        {
+            throw new IllegalArgumentException("Cannot map a " + w + "x" + h + " count file");
+        }
+
+        width = w;
+        height = h;
+        bandRows = (int) (BAND_BYTES / (4L * w));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                                   StandardOpenOption.WRITE);
+
+        int     count = (h + bandRows - 1) / bandRows;
+
+        maps = new MappedByteBuffer [count];
+        bands = new IntBuffer [count];
+
+        for (int b = 0; b < count; b++) {
+            int     rows = Math.min(bandRows, h - b * bandRows);
+
+            maps[b] = channel.map(FileChannel.MapMode.READ_WRITE, 4L * width * b * bandRows, 4L * width * rows);
+            maps[b].order(ByteOrder.nativeOrder());
+            bands[b] = maps[b].asIntBuffer();
+        }
+    }
+
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+
+    public int get(int x, int y) {
+        return bands[y / bandRows].get((y % bandRows) * width + x);
+    }
+
+
+    public void set(int x, int y, int count) {
+        bands[y / bandRows].put((y % bandRows) * width + x, count);
+    }
+
+
+    // Copy len counts of row y, starting at column x, into dst.
+    public void getRow(int x, int y, int dst[], int len) {
+        bands[y / bandRows].get((y % bandRows) * width + x, dst, 0, len);
+    }
+
+
+    // Store len counts from src into row y, starting at column x.
+    public void putRow(int x, int y, int src[], int len) {
+        putRow(x, y, src, 0, len);
+    }
+
+
+    // The same, taking the counts from src[off].  Different threads
+    // may store into different pixels at the same time.
+    public void putRow(int x, int y, int src[], int off, int len) {
+        bands[y / bandRows].put((y % bandRows) * width + x, src, off, len);
+    }
+
+
+    // Write everything out to the file.
+    public void force() {
+        for (MappedByteBuffer m : maps) {
+            m.force();
+        }
+    }
+
+
+    // The mappings themselves go away once they are garbage.
+    public void close() throws IOException {
+        force();
+        maps = null;
+        bands = null;
+        channel.close();
+    }
+}
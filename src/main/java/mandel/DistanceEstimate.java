@@ -0,0 +1,149 @@
+// Distance estimates to the boundary of the set.
+//
+// Outside the set, carrying dz/dc along the orbit gives
+//
+//      d = 2 |z| log |z| / |dz/dc|
+//
+// once z is far out.  Inside, once the orbit has been caught by an
+// attracting cycle of period p, the cycle point z0 is pinned down by
+// Newton's method and the derivatives of the p'th iterate at z0 give
+//
+//      d = (1 - |dz|^2) / |dcdz + dzdz dc / (1 - dz)|
+//
+// (dz = d/dz, dc = d/dc, dzdz and dcdz the second derivatives.)  In
+// both cases the true distance is at least d / 4, by the Koebe
+// quarter theorem, so a disk of that radius around the point holds
+// no boundary points.
+//
+// The interior part only runs once per probe and the period is
+// usually short, so it uses Complex for readability.
+
+package mandel;
+
+class DistanceEstimate {
+
+    // |z|^2 an escaping orbit is followed out to, so that the
+    // exterior estimate is close
+    static final double ESCAPE_RADIUS2 = 1.0e12;
+    static final int    EXTRA_ITERATIONS = 64;
+    static final int    NEWTON_STEPS = 16;
+
+
+    // Distance from pixel (x, y) of r to the boundary, in pixels,
+    // that is certain to hold no boundary points: positive outside
+    // the set, negative inside, and 0 when there is no estimate,
+    // e.g. because the point reached the limit without escaping or
+    // being caught by a cycle.
+    static double at(MandelRenderer r, int x, int y) {
+        int     gx = x + r.offsetX;
+        int     gy = y + r.offsetY;
+        double  cr = r.originRe + gx * r.hRe + gy * r.vRe;
+        double  ci = r.originIm + gx * r.hIm + gy * r.vIm;
+        double  spacing = Math.max(Math.hypot(r.hRe, r.hIm), Math.hypot(r.vRe, r.vIm));
+        double  zr = cr;
+        double  zi = ci;
+        double  dr = 1.0;
+        double  di = 0.0;
+        double  savedR = zr;
+        double  savedI = zi;
+        int     power = 1;
+        int     lambda = 0;
+        int     orbits = 0;
+
+        while (true)
+        {
+            double  zr2 = zr * zr;
+            double  zi2 = zi * zi;
+
+            if (zr2 + zi2 > ESCAPE_RADIUS2)
+            {
+                double  m = Math.sqrt(zr2 + zi2);
+
+                r.spent(orbits);
+                return 0.25 * 2.0 * m * Math.log(m) / Math.hypot(dr, di) / spacing;
+            }
+
+            // Past the limit, only orbits that have already escaped
+            // are followed further out
+            if (orbits >= r.iterationLimit && (zr2 + zi2 <= 4.0 || orbits >= r.iterationLimit + EXTRA_ITERATIONS))
+            {
+                r.spent(orbits);
+                return 0.0;
+            }
+
+            double  ndr = 2.0 * (zr * dr - zi * di) + 1.0;
+
+            di = 2.0 * (zr * di + zi * dr);
+            dr = ndr;
+            zi = 2.0 * zr * zi + ci;
+            zr = zr2 - zi2 + cr;
+            orbits += 1;
+
+            if (Math.abs(zr - savedR) < MandelRenderer.PERIODICITY_EPSILON
+                && Math.abs(zi - savedI) < MandelRenderer.PERIODICITY_EPSILON)
+            {
+                r.spent(orbits);
+                return -0.25 * interior(new Complex(cr, ci), new Complex(zr, zi), lambda + 1) / spacing;
+            }
+
+            lambda += 1;
+            if (lambda == power)
+            {
+                savedR = zr;
+                savedI = zi;
+                power <<= 1;
+                lambda = 0;
+            }
+        }
+    }
+
+
+    // Interior distance estimate for c, whose orbit has come close to
+    // a cycle of the given period near z.  0 if the cycle turns out
+    // not to be attracting.
+    static double interior(Complex c, Complex z, int period) {
+        Complex one = new Complex(1.0);
+
+        // Newton's method on f^p(z) - z = 0
+        for (int step = 0; step < NEWTON_STEPS; step++) {
+            Complex w = z;
+            Complex dz = one;
+
+            for (int k = 0; k < period; k++) {
+                dz = w.times(dz).times(2.0);
+                w = w.times(w).plus(c);
+            }
+
+            Complex delta = w.minus(z).times(dz.minus(one).inverse());
+
+            z = z.minus(delta);
+
+            if (delta.norm2() < 1.0e-30)
+            {
+                break;
+            }
+        }
+
+        Complex dz = one;
+        Complex dc = new Complex();
+        Complex dzdz = new Complex();
+        Complex dcdz = new Complex();
+
+        for (int k = 0; k < period; k++) {
+            dcdz = dc.times(dz).plus(z.times(dcdz)).times(2.0);
+            dzdz = dz.times(dz).plus(z.times(dzdz)).times(2.0);
+            dc = z.times(dc).times(2.0).plus(1.0);
+            dz = z.times(dz).times(2.0);
+            z = z.times(z).plus(c);
+        }
+
+        if (dz.norm2() >= 1.0)
+        {
+            return 0.0;
+        }
+
+        Complex den = dcdz.plus(dzdz.times(dc).times(one.minus(dz).inverse()));
+
+        return (1.0 - dz.norm2()) / den.norm();
+    }
+}
@@ -0,0 +1,132 @@
+// Double-double numbers: an unevaluated sum hi + lo of two doubles,
+// with |lo| no more than half an ulp of hi, good for about 106 bits.
+//
+// Unlike Complex these are changed in place.  The double-double
+// kernel in MandelRenderer does the same arithmetic written out on
+// local doubles, so it allocates nothing at all.  Every operation
+// returns this so calls can be chained.  The products lean on
+// Math.fma for the exact rounding error of a double product.
+
+package mandel;
+
+import java.math.BigDecimal;
+
+class DoubleDouble {
+    double  hi;
+    double  lo;
+
+
+    public DoubleDouble() {
+        hi = 0.0;
+        lo = 0.0;
+    }
+
+    public DoubleDouble(double value) {
+        hi = value;
+        lo = 0.0;
+    }
+
+    public DoubleDouble(double high, double low) {
+        hi = high;
+        lo = low;
+    }
+
+    public DoubleDouble(DoubleDouble d) {
+        hi = d.hi;
+        lo = d.lo;
+    }
+
+
+    // The nearest double-double to a decimal.
+    public static DoubleDouble valueOf(BigDecimal b) {
+        double  high = b.doubleValue();
+
+        return new DoubleDouble(high, b.subtract(new BigDecimal(high)).doubleValue());
+    }
+
+    // a * b exactly.
+    public static DoubleDouble product(double a, double b) {
+        double  p = a * b;
+
+        return new DoubleDouble(p, Math.fma(a, b, -p));
+    }
+
+
+    public double doubleValue() {
+        return hi;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return new BigDecimal(hi).add(new BigDecimal(lo));
+    }
+
+    public String toString() {
+        return toBigDecimal().toString();
+    }
+
+
+    public DoubleDouble set(double high, double low) {
+        hi = high;
+        lo = low;
+        return this;
+    }
+
+    public DoubleDouble set(DoubleDouble d) {
+        hi = d.hi;
+        lo = d.lo;
+        return this;
+    }
+
+
+    // Normalize s + e, where |e| is much smaller than |s|.
+    DoubleDouble renormalize(double s, double e) {
+        hi = s + e;
+        lo = e - (hi - s);
+        return this;
+    }
+
+
+    public DoubleDouble add(double bh, double bl) {
+        double  s = hi + bh;
+        double  v = s - hi;
+        double  e = (hi - (s - v)) + (bh - v);
+
+        return renormalize(s, e + lo + bl);
+    }
+
+    public DoubleDouble add(DoubleDouble b) {
+        return add(b.hi, b.lo);
+    }
+
+    public DoubleDouble subtract(DoubleDouble b) {
+        return add(-b.hi, -b.lo);
+    }
+
+
+    public DoubleDouble multiply(double bh, double bl) {
+        double  p = hi * bh;
+        double  e = Math.fma(hi, bh, -p);
+
+        return renormalize(p, e + (hi * bl + lo * bh));
+    }
+
+    public DoubleDouble multiply(DoubleDouble b) {
+        return multiply(b.hi, b.lo);
+    }
+
+
+    public DoubleDouble square() {
+        double  p = hi * hi;
+        double  e = Math.fma(hi, hi, -p);
+
+        return renormalize(p, e + 2.0 * hi * lo);
+    }
+
+
+    // Multiplying by two is exact.
+    public DoubleDouble twice() {
+        hi *= 2.0;
+        lo *= 2.0;
+        return this;
+    }
+}
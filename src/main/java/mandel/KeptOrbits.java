@@ -0,0 +1,124 @@
+// Where the orbits that reached the iteration limit stopped, so that
+// MandelRenderer.raiseLimit can carry them on.
+//
+// Only those pixels have a z worth keeping, and in most views they
+// are a small part of the picture, so each pixel just has a slot
+// number into packed chunks of z that are added as orbits are kept.
+// Pixels known never to escape need no z and only get a mark in
+// place of a slot.  That is 4 bytes a pixel plus 16 for each kept
+// z, against 16 bytes a pixel for a z for every pixel.
+//
+// Kernels on several threads keep orbits at once, but each pixel
+// belongs to one task, so a pixel's slot and its z are only ever
+// touched by that task and need no lock.  The lock is only taken to
+// hand out a slot.  Chunks never move once made, so adding one can't
+// lose a z another thread is writing meanwhile; the list of them is
+// replaced whole and published through a volatile field.
+
+package mandel;
+
+import java.util.Arrays;
+
+public class KeptOrbits {
+
+    static final int    NONE = -1;
+    static final int    INTERIOR = -2;
+    static final int    CHUNK_BITS = 10;
+    static final int    CHUNK = 1 << CHUNK_BITS;
+
+    int                 slot[];         // per pixel: NONE, INTERIOR or where its z is
+    volatile double     chunks[][];     // z for CHUNK slots each, re and im side by side
+    int                 used;
+
+
+    public KeptOrbits(int pixels) {
+        slot = new int [pixels];
+        chunks = new double [][] { new double [2 * CHUNK] };
+        clear();
+    }
+
+
+    // Only called between renders, with no kernel running.
+    public synchronized void clear()
+    {
+        Arrays.fill(slot, NONE);
+        used = 0;
+    }
+
+
+    // Keep z for pixel p, or MandelRenderer.INTERIOR in zr if the
+    // pixel is known never to escape.
+    public void keep(int p, double zr, double zi) {
+        if (zr == MandelRenderer.INTERIOR)
+        {
+            slot[p] = INTERIOR;
+            return;
+        }
+
+        int     s = slot[p];
+
+        if (s < 0)
+        {
+            s = allocate();
+            slot[p] = s;
+        }
+
+        double  c[] = chunks[s >> CHUNK_BITS];
+        int     i = 2 * (s & (CHUNK - 1));
+
+        c[i] = zr;
+        c[i + 1] = zi;
+    }
+
+
+    // A new slot, adding a chunk if the last one is full.
+    synchronized int allocate() {
+        int     s = used++;
+        int     k = s >> CHUNK_BITS;
+
+        if (k == chunks.length)
+        {
+            double  more[][] = Arrays.copyOf(chunks, k + 1);
+
+            more[k] = new double [2 * CHUNK];
+            chunks = more;
+        }
+
+        return s;
+    }
+
+
+    // Forget pixel p.  Its z, if it had one, stays where it was
+    // until the next clear().
+    public void drop(int p)
+    {
+        slot[p] = NONE;
+    }
+
+
+    // The real part of z kept for pixel p, MandelRenderer.INTERIOR
+    // if it never escapes, or NaN if nothing was kept.
+    public double re(int p) {
+        int     s = slot[p];
+
+        if (s >= 0)
+        {
+            return chunks[s >> CHUNK_BITS][2 * (s & (CHUNK - 1))];
+        }
+
+        return (s == INTERIOR ? MandelRenderer.INTERIOR : Double.NaN);
+    }
+
+
+    // The imaginary part of z kept for pixel p, which must have one.
+    public double im(int p) {
+        int     s = slot[p];
+
+        return chunks[s >> CHUNK_BITS][2 * (s & (CHUNK - 1)) + 1];
+    }
+
+
+    public long getBytes() {
+        return 4L * slot.length + 16L * CHUNK * chunks.length;
+    }
+}
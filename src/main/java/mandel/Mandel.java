@@ -0,0 +1,282 @@
+// Use the Complex.java class to draw the
+// Mandelbrot set.
+
+package mandel;
+
+import java.awt.event.*;
+import java.awt.image.*;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Paths;
+import javax.management.JMException;
+
+public class Mandel extends Frame 
+    implements MouseListener, MouseMotionListener {
+ 
+    static final long   serialVersionUID = 1L;
+    
+    // Recolor the whole picture from the counts and put it on
+    // the screen.
+    public void drawAllPoints()
+    {
+        feed.refresh();
+        repaint();
+    }
+    
+    
+    static final int    ZOOM = 4;
+    static final int    CACHE_TILES = 256;
+    static final long   CACHE_BYTES = 256L << 20;
+    
+    int                 mandelWidth;
+    int                 mandelHeight;
+    MandelRenderer      renderer;
+    RenderScheduler     scheduler;
+    TileFeed            feed;
+    String              msg;
+    static boolean      inset;
+    volatile boolean    inDraw;
+    boolean             mouseIsDown;
+    Point               subRectStart;
+    Point               subRectEnd;
+    
+    public void setLimit(int limit)
+    {
+        renderer.setLimit(limit);
+    }
+    
+    
+    // Move the color cycle along.  Only the colors change, the
+    // counts are reused as they are.
+    public void cyclePalette(int step)
+    {
+        renderer.setPalette(renderer.getPalette().cycled(step));
+        drawAllPoints();
+    }
+    
+    
+    // Double the iteration limit.  The renderer carries on from the
+    // orbits it kept instead of starting over.
+    public void raiseLimit()
+    {
+        startRender(() -> renderer.raiseLimit(2 * renderer.getLimit()));
+    }
+    
+    
+    class mandelWindowAdapter extends WindowAdapter {
+        public void windowClosing(WindowEvent we){
+            System.exit(0);
+        }
+    }
+    
+    
+    class mandelKeyAdapter extends KeyAdapter {
+        public void keyTyped(KeyEvent ke) {
+            if (ke.getKeyChar() == 'c' && !inDraw)
+            {
+                cyclePalette(16);
+            }
+            else if (ke.getKeyChar() == 'l' && !inDraw)
+            {
+                raiseLimit();
+            }
+        }
+    }
+    
+    
+    public void mouseClicked(MouseEvent me) {
+        if (me.getClickCount() > 1)
+        {
+            // Zoom in to the clicked point.  The old picture is shown
+            // blown up while the new one is worked out; the renderer
+            // reuses the old counts that land on the new pixel grid.
+            // The picture comes from the screen, since the counts
+            // belong to the render thread.
+            BufferedImage   old = feed.snapshot();
+            
+            // Get rid of the old sub images
+            feed.discard();
+            
+            int             ox = me.getX() - mandelWidth / (2 * ZOOM);
+            int             oy = me.getY() - mandelHeight / (2 * ZOOM);
+            
+            Graphics2D g = feed.createGraphics();
+            g.drawImage(old, 0, 0, mandelWidth, mandelHeight,
+                        ox, oy, ox + mandelWidth / ZOOM, oy + mandelHeight / ZOOM, null);
+            g.dispose();
+            repaint();
+            
+            int             cx = me.getX();
+            int             cy = me.getY();
+            
+            startRender(() -> {
+                renderer.zoom(cx, cy, ZOOM);
+                renderer.drawPicture();
+            });
+        }
+    }
+    
+    // Renders run on the scheduler's thread so the window stays
+    // live, and a newer zoom or pan cuts off the one in progress.
+    // The whole picture is painted once a render gets to the end.
+    public void startRender(Runnable work) {
+        scheduler.submit(() -> {
+                             inDraw = true;
+                             work.run();
+                         },
+                         () -> {
+                             inDraw = false;
+                             feed.renderFinished();
+                             EventQueue.invokeLater(() -> drawAllPoints());
+                         });
+    }
+    
+    public void mouseEntered(MouseEvent me) {
+    }
+    
+    public void mouseExited(MouseEvent me) {
+    }
+    
+    public void mousePressed(MouseEvent me) {
+        mouseIsDown  = true;
+        subRectStart = me.getPoint();
+        subRectEnd   = me.getPoint();
+        repaint();
+    }
+    
+    public void mouseReleased(MouseEvent me) {
+        mouseIsDown = false;
+        subRectEnd   = new Point(me.getX(), me.getY());
+        
+        // A drag pans the picture by the distance the mouse moved.
+        // What is on screen is slid over at once, and the renderer
+        // only works out the strips that come into view.
+        int dx = subRectEnd.x - subRectStart.x;
+        int dy = subRectEnd.y - subRectStart.y;
+        
+        if (dx != 0 || dy != 0)
+        {
+            Graphics2D g = feed.createGraphics();
+            g.copyArea(0, 0, mandelWidth, mandelHeight, dx, dy);
+            g.dispose();
+            repaint();
+            
+            startRender(() -> renderer.pan(dx, dy));
+        }
+        
+        repaint();
+    }
+    
+    public void mouseMoved(MouseEvent me) {
+    }
+    
+    public void mouseDragged(MouseEvent me) {
+        mouseIsDown  = true;
+        subRectEnd   = me.getPoint();
+    }
+    
+    public Mandel(Dimension d) {
+        setSize(d);
+        mandelWidth = (int) d.getWidth();
+        mandelHeight = (int) d.getHeight();
+        renderer = new ParallelRenderer(mandelWidth, mandelHeight);
+        renderer.setVectorKernel(true);
+        renderer.setDeepZoom(true);
+        renderer.setResumable(true);
+        renderer.setProgressive(true);
+        feed = new TileFeed(renderer, this);
+        feed.setInset(inset);
+        renderer.setListener(feed);
+        renderer.setStats(new RenderStats());
+        scheduler = new RenderScheduler(renderer);
+        
+        // The render counters can be watched with jconsole
+        try {
+            renderer.getStats().register(RenderStats.DEFAULT_NAME);
+        }
+        catch (JMException e) {
+            System.err.println("Render stats not available over JMX: " + e);
+        }
+        
+        // Views already seen, this run or an earlier one, come out
+        // of the tile cache
+        try {
+            renderer.setTileCache(new TileCache(CACHE_TILES, Paths.get(System.getProperty("java.io.tmpdir"),
+                                                                       "mandel-tiles"), CACHE_BYTES));
+        }
+        catch (IOException e) {
+            System.err.println("Tile cache not available: " + e);
+        }
+        
+        // Add a listeners to the frame
+        addWindowListener(new mandelWindowAdapter());
+        addKeyListener(new mandelKeyAdapter());
+        addMouseListener(this);
+        addMouseMotionListener(this);
+    }
+    
+    
+    public void update(Graphics g) {
+        feed.paint(g);
+    }
+    
+    
+    public void paint(Graphics g) {
+        feed.paint(g);
+    }
+    
+    
+    public void initialize(Complex ul, Complex lr) {
+        feed.discard();
+        renderer.initialize(ul, lr);
+    }
+    
+    
+    
+    public static void main(String args[]) {
+        int         w = 768;
+        int         h = 768;
+        int         maxIter = 256;
+        Complex     c1 = new Complex(-2.1, 2.1);
+        Complex     c2 = new Complex(2.1, -2.1);
+        
+        /*
+        if (args[6] != null)
+        {
+            c2 = new Complex(Double.parseDouble(args[5]), Double.parseDouble(args[6]));
+        }
+        
+        if (args[4] != null)
+        {
+            c1 = new Complex(Double.parseDouble(args[3]), Double.parseDouble(args[4]));
+        }
+        
+        if (args[2] != null)
+        {
+            maxIter = Integer.parseInt(args[2]);
+        }
+        
+        if (args[1] != null)
+        {
+            h = Integer.parseInt(args[1]);
+            w = Integer.parseInt(args[0]);
+        }
+        */
+        
+        if (args != null && args.length > 0 &&  args[0] != null) {
+            maxIter = Integer.parseInt(args[0]);
+        }
+        
+        inset = true;
+        
+        Mandel  applicationWindow = new Mandel(new Dimension(w, h));
+        applicationWindow.setTitle("Mandelbrot Set");
+        applicationWindow.setVisible(true);
+        
+        applicationWindow.setLimit(maxIter);
+        applicationWindow.initialize(c1, c2);
+        
+        applicationWindow.startRender(() -> applicationWindow.renderer.drawPicture());
+    }
+
+}
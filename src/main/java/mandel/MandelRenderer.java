@@ -0,0 +1,2178 @@
+// Render the Mandelbrot set into a buffer of escape counts
+// using recursive subdivision.  Nothing in here needs a display,
+// so it can run on a headless server.  Mandel.java is just one
+// consumer of the count buffer.
+
+package mandel;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+public class MandelRenderer implements RenderEngine {
+
+    // Told about each sub image as soon as it has been filled in.
+    public interface Listener {
+        void subImageCompleted(SubImage s);
+
+        // Told about each coarse pass of a progressive render, with
+        // the whole picture in blocks of step x step pixels.  The
+        // next pass writes to the same array, so a listener that
+        // uses it later has to copy it.
+        default void previewCompleted(int preview[], int step) {
+        }
+    }
+
+
+    public int velocityToRGB(int velocity) {
+        return palette.color(velocity);
+    }
+
+
+    int escapeVelocity(Complex pt) {
+        return escapeVelocity(pt.real(), pt.imag());
+    }
+
+
+    int escapeVelocity(double cr, double ci) {
+        return escapeVelocity(cr, ci, -1);
+    }
+
+
+    // The escape time kernel for the point c of pixel p, or of no
+    // pixel if p is -1.  The orbit starts at z = c.
+    int escapeVelocity(double cr, double ci, int p) {
+        if (cardioidCheck && insideCardioidOrBulb(cr, ci))
+        {
+            keepOrbit(p, INTERIOR, 0.0);
+            return iterationLimit;
+        }
+
+        return iterate(cr, ci, cr, ci, 0, p);
+    }
+
+
+    // Carry on the orbit of c from z, after the given number of
+    // iterations, up to the limit.  Everything stays in local doubles
+    // so nothing is allocated per iteration; the squares are kept
+    // from one pass to the next because the bailout test needs them
+    // too.  The arithmetic is done in the same order as Complex.times
+    // and Complex.plus, so the counts match the Complex version
+    // exactly.
+    int iterate(double cr, double ci, double zr, double zi, int orbits, int p) {
+        if (periodicityCheck)
+        {
+            return iteratePeriodic(cr, ci, zr, zi, orbits, p);
+        }
+
+        double  zr2 = zr * zr;
+        double  zi2 = zi * zi;
+        int     first = orbits;
+
+        while (zr2 + zi2 <= 4.0 && orbits < iterationLimit)
+        {
+            zi = 2.0 * zr * zi + ci;
+            zr = zr2 - zi2 + cr;
+            zr2 = zr * zr;
+            zi2 = zi * zi;
+            orbits += 1;
+        }
+
+        spent(orbits - first);
+
+        if (orbits == iterationLimit)
+        {
+            keepOrbit(p, zr, zi);
+        }
+
+        return orbits;
+    }
+
+
+    // Points in the main cardioid or the period 2 bulb never escape,
+    // and there is a closed form test for both of them.
+    static boolean insideCardioidOrBulb(double cr, double ci) {
+        double  ci2 = ci * ci;
+        double  xq = cr - 0.25;
+        double  q = xq * xq + ci2;
+
+        if (q * (q + xq) <= 0.25 * ci2)
+        {
+            return true;
+        }
+
+        double  xb = cr + 1.0;
+
+        return xb * xb + ci2 <= 0.0625;
+    }
+
+
+    // The same kernel with Brent's cycle detection added.  Every
+    // power of two iterations the current z is saved, and if the
+    // orbit comes back to within PERIODICITY_EPSILON of the saved
+    // point it has been caught by an attracting cycle and will
+    // never escape.
+    int iteratePeriodic(double cr, double ci, double zr, double zi, int orbits, int p) {
+        double  zr2 = zr * zr;
+        double  zi2 = zi * zi;
+        double  savedR = zr;
+        double  savedI = zi;
+        int     power = 1;
+        int     lambda = 0;
+        int     first = orbits;
+
+        while (zr2 + zi2 <= 4.0 && orbits < iterationLimit)
+        {
+            zi = 2.0 * zr * zi + ci;
+            zr = zr2 - zi2 + cr;
+            zr2 = zr * zr;
+            zi2 = zi * zi;
+            orbits += 1;
+
+            if (Math.abs(zr - savedR) < PERIODICITY_EPSILON && Math.abs(zi - savedI) < PERIODICITY_EPSILON)
+            {
+                spent(orbits - first);
+                keepOrbit(p, INTERIOR, 0.0);
+                return iterationLimit;
+            }
+
+            lambda += 1;
+            if (lambda == power)
+            {
+                savedR = zr;
+                savedI = zi;
+                power <<= 1;
+                lambda = 0;
+            }
+        }
+
+        spent(orbits - first);
+
+        if (orbits == iterationLimit)
+        {
+            keepOrbit(p, zr, zi);
+        }
+
+        return orbits;
+    }
+
+
+    // Remember where the orbit of pixel p stopped at the limit, or
+    // INTERIOR if it is known never to escape.  Only done when orbits
+    // are being kept.
+    void keepOrbit(int p, double zr, double zi) {
+        if (p >= 0 && orbits != null)
+        {
+            orbits.keep(p, zr, zi);
+        }
+    }
+
+
+    // Bookkeeping for the kernels, called once per point after the
+    // iteration loop.
+    void spent(int orbits) {
+        if (stats != null)
+        {
+            stats.iterations.add(orbits);
+        }
+    }
+
+
+    // System.nanoTime() when stats are being kept, so the phases
+    // can be timed without a clock read when they are not.
+    long startClock() {
+        return (stats != null ? System.nanoTime() : 0L);
+    }
+
+
+    // Escape count for pixel (x, y), with the point worked out from
+    // the pixel index instead of through Complex arithmetic.  Finer
+    // views go through the double-double or perturbation kernel,
+    // whichever choosePrecision() picked.
+    int escapeAt(int x, int y) {
+        if (precision == DOUBLE)
+        {
+            int     gx = x + offsetX;
+            int     gy = y + offsetY;
+
+            return escapeVelocity(originRe + gx * hRe + gy * vRe, originIm + gx * hIm + gy * vIm, y * width + x);
+        }
+        else if (precision == DOUBLE_DOUBLE)
+        {
+            return escapeVelocityDD(x, y);
+        }
+        else
+        {
+            return deep.escapeAt(x, y);
+        }
+    }
+
+
+    // The escape time kernel in double-double.  Like the perturbation
+    // kernel it skips the cardioid and cycle shortcuts, which are
+    // only trustworthy to double precision.  The arithmetic is that
+    // of DoubleDouble, written out on local hi/lo pairs so nothing is
+    // allocated per pixel: two-sum for additions, Math.fma for the
+    // rounding error of products.
+    int escapeVelocityDD(int x, int y) {
+        double  s, v, e, p;
+
+        x += offsetX;
+        y += offsetY;
+
+        // c = origin + x h + y v, each product exact
+        double  crh = originRe;
+        double  crl = originReLo;
+        double  cih = originIm;
+        double  cil = originImLo;
+        double  th, tl;
+
+        th = x * hRe;
+        tl = Math.fma(x, hRe, -th);
+        s = crh + th;  v = s - crh;  e = (crh - (s - v)) + (th - v) + crl + tl;
+        crh = s + e;  crl = e - (crh - s);
+
+        th = y * vRe;
+        tl = Math.fma(y, vRe, -th);
+        s = crh + th;  v = s - crh;  e = (crh - (s - v)) + (th - v) + crl + tl;
+        crh = s + e;  crl = e - (crh - s);
+
+        th = x * hIm;
+        tl = Math.fma(x, hIm, -th);
+        s = cih + th;  v = s - cih;  e = (cih - (s - v)) + (th - v) + cil + tl;
+        cih = s + e;  cil = e - (cih - s);
+
+        th = y * vIm;
+        tl = Math.fma(y, vIm, -th);
+        s = cih + th;  v = s - cih;  e = (cih - (s - v)) + (th - v) + cil + tl;
+        cih = s + e;  cil = e - (cih - s);
+
+        double  zrh = crh;
+        double  zrl = crl;
+        double  zih = cih;
+        double  zil = cil;
+        int     orbits = 0;
+
+        while (zrh * zrh + zih * zih <= 4.0 && orbits < iterationLimit)
+        {
+            // re^2 and im^2
+            double  ah, al, bh, bl;
+
+            p = zrh * zrh;
+            e = Math.fma(zrh, zrh, -p) + 2.0 * zrh * zrl;
+            ah = p + e;  al = e - (ah - p);
+
+            p = zih * zih;
+            e = Math.fma(zih, zih, -p) + 2.0 * zih * zil;
+            bh = p + e;  bl = e - (bh - p);
+
+            // 2 re im, doubling being exact
+            p = zih * zrh;
+            e = Math.fma(zih, zrh, -p) + (zih * zrl + zil * zrh);
+            zih = p + e;  zil = e - (zih - p);
+            zih *= 2.0;  zil *= 2.0;
+
+            // re^2 - im^2
+            s = ah - bh;  v = s - ah;  e = (ah - (s - v)) + (-bh - v) + al + -bl;
+            zrh = s + e;  zrl = e - (zrh - s);
+
+            // + c
+            s = zrh + crh;  v = s - zrh;  e = (zrh - (s - v)) + (crh - v) + zrl + crl;
+            zrh = s + e;  zrl = e - (zrh - s);
+
+            s = zih + cih;  v = s - zih;  e = (zih - (s - v)) + (cih - v) + zil + cil;
+            zih = s + e;  zil = e - (zih - s);
+
+            orbits += 1;
+        }
+
+        spent(orbits);
+        return orbits;
+    }
+
+
+    // Pick the cheapest kernel that still resolves neighbouring
+    // pixels: plain doubles while a pixel is more than DOUBLE_SPACING
+    // of the size of the points in view, double-double down to
+    // DOUBLE_DOUBLE_SPACING, and perturbation below that if deep
+    // zoom is on.  Called before each render.
+    void choosePrecision() {
+        Complex     ul = fullPicture.upperLeft();
+        Complex     lr = fullPicture.lowerRight();
+        double      spacing = Math.max(Math.hypot(hRe, hIm), Math.hypot(vRe, vIm));
+        double      relative = spacing / Math.max(ul.norm(), lr.norm());
+
+        if (relative >= DOUBLE_SPACING)
+        {
+            precision = DOUBLE;
+        }
+        else if (relative >= DOUBLE_DOUBLE_SPACING || deep == null)
+        {
+            precision = DOUBLE_DOUBLE;
+        }
+        else
+        {
+            precision = PERTURBATION;
+        }
+
+        if (deep != null)
+        {
+            deep.prepare();
+        }
+    }
+
+
+    // Fill in n pixels starting at (x, y) and stepping by (dx, dy).
+    // Uses the vector kernel when it is available and turned on.
+    // Cancellation is checked for every point, since a single strip
+    // of interior points can take a long time at high limits.
+    void escapeStrip(int x, int y, int dx, int dy, int n) {
+        if (cancelled())
+        {
+            return;
+        }
+
+        if (vectorKernel && n >= VECTOR_MIN_STRIP && precision == DOUBLE && !membership)
+        {
+            VectorKernel.escapeStrip(this, x, y, dx, dy, n);
+        }
+        else
+        {
+            for (int k = 0; k < n && !cancelled(); k++) {
+                evaluate(x + k * dx, y + k * dy);
+            }
+        }
+    }
+
+
+    static boolean vectorKernelAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+
+
+    public class SubImage {
+        Rectangle   rect;
+
+        public SubImage(Rectangle r) {
+            rect = r;
+        }
+
+        public int getX() { return (int) Math.round(rect.getX()); }
+        public int getY() { return (int) Math.round(rect.getY()); }
+        public int getWidth() { return (int) Math.round(rect.getWidth()); }
+        public int getHeight() { return (int) Math.round(rect.getHeight()); }
+
+
+        public boolean subdivide() {
+            boolean mustSubdivide = false;
+
+            if (getHeight() > 1 && getWidth() > 1)
+            {
+                int     rightX = getX() + getWidth() - 1;
+                int     lowerY = getY() + getHeight() - 1;
+
+                int     base = count(getX(), getY());
+
+                mustSubdivide =  base != count(getX(), lowerY)
+                                 ||
+                                 base != count(rightX, getY())
+                                 ||
+                                 base != count(rightX, lowerY);
+
+                if (!mustSubdivide)
+                {
+                    for (int i = 1; i < getWidth() - 1; i++) {
+                        mustSubdivide = base != count(getX() + i, getY());
+                        if (mustSubdivide) break;
+                    }
+                }
+
+                if (!mustSubdivide)
+                {
+                    for (int i = 0; i < getHeight() - 1; i++) {
+                        mustSubdivide = base != count(getX(), getY() + i);
+                        if (mustSubdivide) break;
+                    }
+                }
+
+                if (!mustSubdivide)
+                {
+                    for (int i = 0; i < getHeight() - 1; i++) {
+                        mustSubdivide = base != count(rightX, getY() + i);
+                        if (mustSubdivide) break;
+                    }
+                }
+
+                if (!mustSubdivide)
+                {
+                    for (int i = 0; i < getWidth() - 1; i++) {
+                        mustSubdivide = base != count(getX() + i, lowerY);
+                        if (mustSubdivide) break;
+                    }
+                }
+            }
+
+            return mustSubdivide;
+        }
+
+
+        public void complete() {
+            // Assumption: the boundary of the rect has been evaluated,
+            // and all points on the boundary have the same potential.
+            // This function will fill in all of the interior cells.
+            int     base = count(getX(), getY());
+
+            if (stats != null)
+            {
+                stats.pixelsFilled.add(unknownInside());
+            }
+
+            for (int j = 1; j + 1 < getHeight(); j++) {
+                int     row = (getY() + j) * width + getX();
+
+                for (int i = 1; i + 1 < getWidth(); i++) {
+                    counts[row + i] = base;
+                }
+            }
+        }
+
+
+        // The pixels inside the boundary that are not known yet.
+        int unknownInside() {
+            int     unknown = 0;
+
+            for (int j = 1; j + 1 < getHeight(); j++) {
+                int     row = (getY() + j) * width + getX();
+
+                for (int i = 1; i + 1 < getWidth(); i++) {
+                    if (counts[row + i] == UNKNOWN) unknown++;
+                }
+            }
+
+            return unknown;
+        }
+
+
+        public SubImage[] subRects() {
+            if (stats != null)
+            {
+                stats.splits.increment();
+            }
+
+            int halfWidthRight = getWidth() >> 1;
+            int halfHeightDown = getHeight() >> 1;
+            int halfWidthLeft = getWidth() - halfWidthRight;
+            int halfHeightUp = getHeight() - halfHeightDown;
+
+            SubImage    r1 = null, r2 = null, r3 = null, r4 = null;
+
+            // If the horizontal width is even, then halfWidthLeft == halfWidthRight
+            // and similarly if vertical height is even, halfHeightUp == halfHeightDown.
+            // Otherwise halfWidthLeft >= halfWidthRight and halfHeightUp >= halfHeightDown.
+            // If halfWidthRight == 0 or halfHeightDown == 0, then ONLY the upper left
+            // quadrant will have a non-degenerate area.
+
+            if (halfWidthLeft > 0 && halfHeightUp > 0)
+            {
+                Rectangle   s1 = new Rectangle(getX(), getY(), halfWidthLeft, halfHeightUp);
+                r1 = new SubImage(s1);
+            }
+
+            if (halfWidthRight > 0 && halfHeightDown > 0)
+            {
+                // All 4 subquadrants are non-degenerate
+                Rectangle   s2 = new Rectangle(getX() + halfWidthLeft, getY(), halfWidthRight, halfHeightUp);
+                r2 = new SubImage(s2);
+
+                Rectangle   s3 = new Rectangle(getX(), getY() + halfHeightUp, halfWidthLeft, halfHeightDown);
+                r3 = new SubImage(s3);
+
+                Rectangle   s4 = new Rectangle(getX() + halfWidthLeft, getY() + halfHeightUp, halfWidthRight, halfHeightDown);
+                r4 = new SubImage(s4);
+            }
+
+            SubImage returnVal[] = new SubImage [ 4 ];
+
+            returnVal[0] = r1;
+            returnVal[1] = r2;
+            returnVal[2] = r3;
+            returnVal[3] = r4;
+
+            return returnVal;
+        }
+
+        // The corner points are only worked out on request; the
+        // engine itself goes through escapeAt() with pixel indices.
+        public Complex upperLeft() {
+            return point(this, 0, 0);
+        }
+
+        public Complex lowerRight() {
+            return point(this, getWidth() - 1, getHeight() - 1);
+        }
+
+        public Complex lowerLeft() {
+            return point(this, 0, getHeight() - 1);
+        }
+
+        public Complex upperRight() {
+            return point(this, getWidth() - 1, 0);
+        }
+    }
+
+
+    static final double PERIODICITY_EPSILON = 1.0e-13;
+    static final int    UNKNOWN = -1;
+    static final int    VECTOR_MIN_STRIP = 16;
+
+    // Kernels, by the precision they work in
+    static final int    DOUBLE = 0;
+    static final int    DOUBLE_DOUBLE = 1;
+    static final int    PERTURBATION = 2;
+
+    // Pixel spacing, relative to the points in view, below which
+    // doubles and then double-doubles can no longer be trusted
+    static final double DOUBLE_SPACING = 1.0e-12;
+    static final double DOUBLE_DOUBLE_SPACING = 1.0e-27;
+
+    // Kept in place of z for pixels that are known never to escape;
+    // a pixel with no orbit kept has NaN.
+    static final double INTERIOR = Double.POSITIVE_INFINITY;
+
+    // How far, in pixels, a row may be from the mirror image of
+    // another before the view is not treated as symmetric
+    static final double SYMMETRY_TOLERANCE = 0.01;
+
+    // Sub images smaller than this across are not probed for a
+    // distance estimate
+    static final int    DISK_MIN = 8;
+
+    // Pixels across and down between the samples of the first
+    // preview pass; each pass after halves it
+    static final int    PREVIEW_STEP = 16;
+
+    // Bits of cacheVariant(), with the leaf size above them
+    static final int    VARIANT_CARDIOID = 1;
+    static final int    VARIANT_PERIODICITY = 2;
+    static final int    VARIANT_DISTANCE = 4;
+    static final int    VARIANT_TRACED = 8;
+    static final int    VARIANT_LEAF_SHIFT = 4;
+
+    // Tile cache sizes for -cache: tiles in memory, bytes on disk
+    static final int    CACHE_TILES = 256;
+    static final long   CACHE_BYTES = 256L << 20;
+
+    int                 width;
+    int                 height;
+    int                 iterationLimit;
+    boolean             cardioidCheck;
+    boolean             periodicityCheck;
+    boolean             vectorKernel;
+    boolean             symmetry;
+    boolean             distanceFill;
+    boolean             membership;
+    int                 leafSize;
+    Complex             vDelta;
+    Complex             hDelta;
+    double              originRe;
+    double              originIm;
+    double              originReLo;
+    double              originImLo;
+    double              hRe;
+    double              hIm;
+    double              vRe;
+    double              vIm;
+    int                 offsetX;        // where pixel (0, 0) is in the picture
+    int                 offsetY;        // the view was set up for
+    int                 counts[];
+    int                 spare[];
+    KeptOrbits          orbits;
+    int                 preview[];
+    volatile Palette    palette;        // read by the window's paint side
+    SubImage            fullPicture;
+    Listener            listener;
+    RenderStats         stats;
+    Perturbation        deep;
+    TileCache           cache;
+    int                 precision;
+    AtomicLong          latestGeneration;
+    volatile long       generation;
+    volatile boolean    complete;
+
+
+    public MandelRenderer(int w, int h) {
+        width = w;
+        height = h;
+        iterationLimit = 100;
+        cardioidCheck = true;
+        periodicityCheck = true;
+        vectorKernel = false;
+        symmetry = true;
+        distanceFill = false;
+        membership = false;
+        leafSize = 0;
+        offsetX = 0;
+        offsetY = 0;
+        counts = new int [width * height];
+        spare = null;
+        orbits = null;
+        preview = null;
+        palette = new Palette(iterationLimit);
+        fullPicture = null;
+        listener = null;
+        stats = null;
+        deep = null;
+        cache = null;
+        precision = DOUBLE;
+        latestGeneration = null;
+        generation = 0;
+        complete = false;
+    }
+
+
+    public void setLimit(int limit)
+    {
+        iterationLimit = limit;
+        palette = new Palette(limit, palette.getOffset());
+
+        if (deep != null)
+        {
+            deep.stale = true;
+        }
+    }
+
+
+    public int getLimit() { return iterationLimit; }
+
+    public Palette getPalette() { return palette; }
+
+    // Changing the palette does not touch the counts, so the
+    // picture can be recolored without rendering it again.
+    public void setPalette(Palette p)
+    {
+        palette = p;
+    }
+
+    // Both interior shortcuts are on by default; turn them off to
+    // see what they are worth.
+    public void setCardioidCheck(boolean on)
+    {
+        cardioidCheck = on;
+    }
+
+    public void setPeriodicityCheck(boolean on)
+    {
+        periodicityCheck = on;
+    }
+
+    // The vector kernel can only be turned on when the
+    // jdk.incubator.vector module has been added.  It is off by
+    // default because the Vector API is very slow until C2 has
+    // compiled it, which costs a one-shot render about a second.
+    public void setVectorKernel(boolean on)
+    {
+        vectorKernel = on && vectorKernelAvailable();
+    }
+
+    // A view that straddles the real axis is mirrored in it, so
+    // only the larger half is rendered and the rest copied.  On by
+    // default.
+    public void setSymmetry(boolean on)
+    {
+        symmetry = on;
+    }
+
+    // With distance filling on, the middle of every sub image that
+    // has to be split is probed for its distance to the boundary, and
+    // the disk around it that holds no boundary points is filled in.
+    // Interior disks get the limit, just as if they were iterated.
+    // Exterior disks are only filled when rendering membership.
+    public void setDistanceFill(boolean on)
+    {
+        distanceFill = on;
+    }
+
+    // Render only whether each point escapes within the limit: 0 if
+    // it does, the limit if not.  The vector kernel is not used.
+    public void setMembership(boolean on)
+    {
+        membership = on;
+    }
+
+    // Sub images no bigger than size x size that still need to be
+    // split are evaluated point by point instead.  0 turns this off.
+    public void setLeafSize(int size)
+    {
+        leafSize = size;
+    }
+
+    // Keep z for every pixel that reaches the limit, so raiseLimit()
+    // can carry on from there.  Costs an int per pixel and two
+    // doubles per pixel that reaches the limit; see KeptOrbits.
+    public void setResumable(boolean on)
+    {
+        orbits = (on ? new KeptOrbits(width * height) : null);
+    }
+
+    // Show coarse previews before the picture comes in; see
+    // preview().
+    public void setProgressive(boolean on)
+    {
+        preview = (on ? new int [width * height] : null);
+    }
+
+    public boolean isProgressive() { return preview != null; }
+
+    public void setListener(Listener l)
+    {
+        listener = l;
+    }
+
+    // Counters are only kept while a RenderStats is set; null
+    // turns them off.
+    public void setStats(RenderStats s)
+    {
+        stats = s;
+    }
+
+    public RenderStats getStats() { return stats; }
+
+    // Views that line up with the cache's lattice are filled in from
+    // it before rendering and stored in it afterwards; null turns
+    // caching off.
+    public void setTileCache(TileCache c)
+    {
+        cache = c;
+    }
+
+    public TileCache getTileCache() { return cache; }
+
+    // With deep zoom on, the view origin is also kept in BigDecimal,
+    // and views finer than DOUBLE_DOUBLE_SPACING are rendered by
+    // perturbation from a reference orbit.  Turn it on before
+    // zooming in; the position is only exact from then on.
+    public void setDeepZoom(boolean on)
+    {
+        deep = (on ? new Perturbation(this) : null);
+    }
+
+    // True if the last render went through the perturbation kernel.
+    public boolean isDeep() { return precision == PERTURBATION; }
+
+    public String getPrecisionName() {
+        return (precision == DOUBLE ? "double" : precision == DOUBLE_DOUBLE ? "double-double" : "perturbation");
+    }
+
+    public int getWidth() { return width; }
+    public int getHeight() { return height; }
+
+
+    // The escape count at pixel (x, y).  The buffer is stored
+    // row by row, so x varies fastest.
+    public int count(int x, int y)
+    {
+        return counts[y * width + x];
+    }
+
+
+    void setCount(int x, int y, int velocity)
+    {
+        counts[y * width + x] = velocity;
+    }
+
+
+    // Work out the count at (x, y) unless it is already known,
+    // e.g. because it was carried over from the previous view.
+    void evaluate(int x, int y)
+    {
+        int     p = y * width + x;
+
+        if (counts[p] == UNKNOWN)
+        {
+            counts[p] = escapeAt(x, y);
+
+            if (membership && counts[p] < iterationLimit)
+            {
+                counts[p] = 0;
+            }
+
+            if (stats != null)
+            {
+                stats.pixelsEvaluated.increment();
+            }
+        }
+    }
+
+
+    // Mark every pixel as not yet evaluated.
+    public void clear()
+    {
+        Arrays.fill(counts, UNKNOWN);
+
+        if (orbits != null)
+        {
+            orbits.clear();
+        }
+    }
+
+
+    public Complex point(SubImage s, int i, int j)
+    {
+        Complex pt = null;
+
+        if (0 <= i && 0 <= j && i < s.getWidth() && j < s.getHeight())
+        {
+            int x = s.getX() + i;
+            int y = s.getY() + j;
+
+            int gx = x + offsetX;
+            int gy = y + offsetY;
+
+            pt = new Complex(originRe + gx * hRe + gy * vRe, originIm + gx * hIm + gy * vIm);
+        }
+
+        return pt;
+    }
+
+
+    public void drawRight(SubImage s) {
+        escapeStrip(s.getX() + s.getWidth() - 1, s.getY() + 1, 0, 1, s.getHeight() - 2);
+    }
+
+
+    public void drawLeft(SubImage s) {
+        escapeStrip(s.getX(), s.getY() + 1, 0, 1, s.getHeight() - 2);
+    }
+
+
+    public void drawBottom(SubImage s) {
+        escapeStrip(s.getX() + 1, s.getY() + s.getHeight() - 1, 1, 0, s.getWidth() - 2);
+    }
+
+
+    public void drawTop(SubImage s) {
+        escapeStrip(s.getX() + 1, s.getY(), 1, 0, s.getWidth() - 2);
+    }
+
+
+    public void drawLowerRightSubImage(SubImage s) {
+        long    start = startClock();
+
+        // Assupmtion: the right and bottom sides of s
+        // have already been drawn...
+
+        // The upper left corner needs to be drawn
+        evaluate(s.getX(), s.getY());
+
+        // Compute the points on the left and top sides
+        drawTop(s);
+        drawLeft(s);
+
+        boundaryDone(start);
+    }
+
+
+    public void drawLowerLeftSubImage(SubImage s) {
+        long    start = startClock();
+
+        // Assumption: the left and bottom sides of s
+        // have already been drawn...
+
+        int rightX = s.getX() + s.getWidth() - 1;
+
+        // The upper right corner needs to be drawn
+        evaluate(rightX, s.getY());
+
+        // Compute the points on the top and right sides
+        drawTop(s);
+        drawRight(s);
+
+        boundaryDone(start);
+    }
+
+
+    public void drawUpperRightSubImage(SubImage s) {
+        long    start = startClock();
+
+        // Assumption: the top and right sides of s
+        // have already been drawn...
+
+        int bottomY = s.getY() + s.getHeight() - 1;
+
+        // The lower left corner needs to be drawn
+        evaluate(s.getX(), bottomY);
+
+        // Compute the points on the left and bottom sides
+        drawLeft(s);
+        drawBottom(s);
+
+        boundaryDone(start);
+    }
+
+
+    public void drawUpperLeftSubImage(SubImage s) {
+        long    start = startClock();
+
+        // Assumption:  The left and top sides of s
+        // have already been drawn...
+
+        int rightX = s.getX() + s.getWidth() - 1;
+        int bottomY = s.getY() + s.getHeight() - 1;
+
+        // The lower right corner hasn't been drawn.
+        evaluate(rightX, bottomY);
+
+        // Compute all of the points on the right and bottom sides
+        drawRight(s);
+        drawBottom(s);
+
+        boundaryDone(start);
+    }
+
+
+    public void drawSubImageBoundary(SubImage s) {
+        long    start = startClock();
+
+        // Compute the correct escape times for points
+        // on the boundary of the sub-image.  If all of
+        // these points have the same escape time, then
+        // the sub-image interior must have the same escape
+        // time at each point.  This is because the level
+        // curves for the potential function of a connected
+        // compact set all bound connected regions of the
+        // complex plane.
+
+        int rightX = s.getX() + s.getWidth() - 1;
+        int bottomY = s.getY() + s.getHeight() - 1;
+
+        // Get the escape times for the upper left corner
+        evaluate(s.getX(), s.getY());
+
+        // Get escape times for the lower right corner
+        evaluate(rightX, bottomY);
+
+        // Get escape times for the upper right corner
+        evaluate(rightX, s.getY());
+
+        // Get escape times for the lower left corner
+        evaluate(s.getX(), bottomY);
+
+        // Compute all of the points on the boundary
+        drawTop(s);
+        drawBottom(s);
+        drawLeft(s);
+        drawRight(s);
+
+        boundaryDone(start);
+    }
+
+
+    void boundaryDone(long start) {
+        if (stats != null && start != 0L)
+        {
+            stats.boundaryNanos.add(System.nanoTime() - start);
+        }
+    }
+
+
+    void fillDone(long start) {
+        if (stats != null && start != 0L)
+        {
+            stats.fillNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    // Evaluate every interior point of s, one row at a time.
+    public void bruteForce(SubImage s) {
+        for (int j = 1; j + 1 < s.getHeight(); j++) {
+            escapeStrip(s.getX() + 1, s.getY() + j, 1, 0, s.getWidth() - 2);
+        }
+    }
+
+
+    public void completeAndDraw(SubImage s) {
+        if (cancelled())
+        {
+            return;
+        }
+
+        if (!s.subdivide())
+        {
+            long    start = startClock();
+
+            s.complete();
+            fillDone(start);
+
+            if (listener != null)
+            {
+                listener.subImageCompleted(s);
+            }
+        }
+        else if (s.getWidth() <= leafSize && s.getHeight() <= leafSize)
+        {
+            long    start = startClock();
+
+            bruteForce(s);
+            fillDone(start);
+
+            if (listener != null)
+            {
+                listener.subImageCompleted(s);
+            }
+        }
+        else
+        {
+            if (distanceFill)
+            {
+                fillDisk(s);
+            }
+
+            fillInSubImage(s);
+        }
+    }
+
+
+    // Probe the middle of s and fill in the pixels of s that are
+    // certain to be on the same side of the boundary.  Only the
+    // interior of s is touched, which keeps this safe under the
+    // fork/join engine.
+    void fillDisk(SubImage s) {
+        int     w = s.getWidth();
+        int     h = s.getHeight();
+        int     cx = s.getX() + w / 2;
+        int     cy = s.getY() + h / 2;
+
+        if (w < DISK_MIN || h < DISK_MIN || precision != DOUBLE || count(cx, cy) != UNKNOWN)
+        {
+            return;
+        }
+
+        double  d = DistanceEstimate.at(this, cx, cy);
+        int     value;
+
+        if (d < 0.0)
+        {
+            value = iterationLimit;
+        }
+        else if (d > 0.0 && membership)
+        {
+            value = 0;
+        }
+        else
+        {
+            return;
+        }
+
+        double  r2 = d * d;
+        int     r = (int) Math.abs(d);
+        int     filled = 0;
+
+        for (int y = Math.max(cy - r, s.getY() + 1); y <= Math.min(cy + r, s.getY() + h - 2); y++) {
+            for (int x = Math.max(cx - r, s.getX() + 1); x <= Math.min(cx + r, s.getX() + w - 2); x++) {
+                int     p = y * width + x;
+
+                if ((x - cx) * (x - cx) + (y - cy) * (y - cy) <= r2 && counts[p] == UNKNOWN)
+                {
+                    counts[p] = value;
+                    filled += 1;
+
+                    if (value == iterationLimit)
+                    {
+                        keepOrbit(p, INTERIOR, 0.0);
+                    }
+                }
+            }
+        }
+
+        if (stats != null)
+        {
+            stats.pixelsEstimated.add(filled);
+        }
+    }
+
+
+    public void fillInSubImage(SubImage s) {
+        if (cancelled())
+        {
+            return;
+        }
+
+        SubImage        quadrants[] = s.subRects();
+
+        // quadrant[0] = upper left
+        // quadrant[1] = upper right
+        // quadrant[2] = lower left
+        // quadrant[3] = lower right
+
+        if (quadrants[0] != null)
+        {
+            drawUpperLeftSubImage(quadrants[0]);
+            completeAndDraw(quadrants[0]);
+        }
+
+        if (quadrants[1] != null)
+        {
+            drawUpperRightSubImage(quadrants[1]);
+            completeAndDraw(quadrants[1]);
+        }
+
+        if (quadrants[2] != null)
+        {
+            drawLowerLeftSubImage(quadrants[2]);
+            completeAndDraw(quadrants[2]);
+        }
+
+        if (quadrants[3] != null)
+        {
+            drawLowerRightSubImage(quadrants[3]);
+            completeAndDraw(quadrants[3]);
+        }
+    }
+
+
+    public void drawPicture() {
+        if (stats != null)
+        {
+            stats.renders.increment();
+        }
+
+        choosePrecision();
+        complete = false;
+
+        long        lattice[] = latticePosition();
+
+        Map<TileCache.Key, int[]>   tiles = (lattice != null ? loadTiles(lattice) : null);
+
+        Rectangle   half = symmetricHalf();
+
+        if (tiles != null && !hasUnknown())
+        {
+            // All of it came out of the cache
+            if (listener != null)
+            {
+                listener.subImageCompleted(fullPicture);
+            }
+        }
+        else
+        {
+            if (preview != null)
+            {
+                preview();
+            }
+
+            if (half == null)
+            {
+                renderPicture();
+            }
+            else
+            {
+                renderRegion(half);
+                mirror(half);
+            }
+        }
+
+        complete = !cancelled();
+
+        if (lattice != null && complete)
+        {
+            storeTiles(lattice, tiles);
+        }
+    }
+
+
+    // The zoom level of the tile cache's lattice that the view lines
+    // up with, and the lattice pixel at (0, 0); null if there is no
+    // cache or the view is not on the lattice.  Membership renders
+    // are not cached, since their counts mean something else.
+    long[] latticePosition() {
+        if (cache == null || membership || hIm != 0.0 || vRe != 0.0 || vIm != -hRe)
+        {
+            return null;
+        }
+
+        int     zoom = TileCache.zoomFor(hRe);
+        Long    px = TileCache.latticePixel(originRe, originReLo, TileCache.WORLD_LEFT, hRe);
+        Long    py = TileCache.latticePixel(-originIm, -originImLo, -TileCache.WORLD_TOP, hRe);
+
+        if (zoom == Integer.MIN_VALUE || px == null || py == null)
+        {
+            return null;
+        }
+
+        return new long[] { zoom, px + offsetX, py + offsetY };
+    }
+
+
+    // What else decides the counts a render comes out with, so that
+    // cached tiles rendered another way are not mixed in: the
+    // shortcuts and fills that can change a count, the leaf size and
+    // the engine.
+    int cacheVariant() {
+        return (cardioidCheck ? VARIANT_CARDIOID : 0) | (periodicityCheck ? VARIANT_PERIODICITY : 0)
+               | (distanceFill ? VARIANT_DISTANCE : 0) | (leafSize << VARIANT_LEAF_SHIFT);
+    }
+
+
+    // Copy whatever the cache has for the tiles under the view into
+    // pixels that are not known yet.  Returns the tiles looked up,
+    // with null for the ones that were not there.
+    Map<TileCache.Key, int[]> loadTiles(long lattice[]) {
+        Map<TileCache.Key, int[]>   tiles = new HashMap<>();
+        int                         size = TileCache.TILE_SIZE;
+        long                        px = lattice[1];
+        long                        py = lattice[2];
+        int                         cached = 0;
+
+        for (long ty = Math.floorDiv(py, size); ty * size < py + height; ty++) {
+            for (long tx = Math.floorDiv(px, size); tx * size < px + width; tx++) {
+                TileCache.Key   k = new TileCache.Key((int) lattice[0], tx, ty, iterationLimit, precision,
+                                                      cacheVariant());
+                int             t[] = cache.get(k);
+
+                tiles.put(k, t);
+
+                if (t == null)
+                {
+                    continue;
+                }
+
+                int     x0 = (int) Math.max(0, tx * size - px);
+                int     y0 = (int) Math.max(0, ty * size - py);
+                int     x1 = (int) Math.min(width, tx * size + size - px);
+                int     y1 = (int) Math.min(height, ty * size + size - py);
+
+                for (int y = y0; y < y1; y++) {
+                    int     from = (int) ((py + y - ty * size) * size + (px - tx * size));
+
+                    for (int x = x0; x < x1; x++) {
+                        if (counts[y * width + x] == UNKNOWN && t[from + x] != UNKNOWN)
+                        {
+                            counts[y * width + x] = t[from + x];
+                            cached++;
+                        }
+                    }
+                }
+            }
+        }
+
+        if (stats != null)
+        {
+            stats.pixelsCached.add(cached);
+        }
+
+        return tiles;
+    }
+
+
+    // Hand the cache the counts of every tile under the view.  Tiles
+    // the view only partly covers are merged with what the cache
+    // already had, and the pixels nobody has seen yet left UNKNOWN.
+    // Tiles the cache already had in full are left alone.
+    void storeTiles(long lattice[], Map<TileCache.Key, int[]> tiles) {
+        int     size = TileCache.TILE_SIZE;
+        long    px = lattice[1];
+        long    py = lattice[2];
+
+        for (Map.Entry<TileCache.Key, int[]> e : tiles.entrySet()) {
+            TileCache.Key   k = e.getKey();
+            int             old[] = e.getValue();
+
+            if (old != null && TileCache.isWhole(old))
+            {
+                continue;
+            }
+
+            int     t[] = (old != null ? old.clone() : new int [size * size]);
+            int     x0 = (int) Math.max(0, k.x * size - px);
+            int     y0 = (int) Math.max(0, k.y * size - py);
+            int     x1 = (int) Math.min(width, k.x * size + size - px);
+            int     y1 = (int) Math.min(height, k.y * size + size - py);
+
+            if (old == null)
+            {
+                Arrays.fill(t, UNKNOWN);
+            }
+
+            for (int y = y0; y < y1; y++) {
+                System.arraycopy(counts, y * width + x0, t, (int) ((py + y - k.y * size) * size + (px + x0 - k.x * size)),
+                                 x1 - x0);
+            }
+
+            cache.put(k, t);
+        }
+    }
+
+
+    boolean hasUnknown() {
+        for (int c : counts) {
+            if (c == UNKNOWN)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    // Fill in the whole picture.  Engines that fill regions some
+    // other way override this and renderRegion.
+    void renderPicture() {
+        drawSubImageBoundary(fullPicture);
+        fillInSubImage(fullPicture);
+    }
+
+
+    // Coarse passes over the whole picture before the real render:
+    // every PREVIEW_STEP'th pixel across and down, then half as far
+    // apart each pass down to every other pixel.  Each pass runs the subdivision on its own lattice, which
+    // holds the lattice of the pass before, so the samples that pass
+    // evaluated are known already.  Evaluated samples are kept in the
+    // counts and save the real render the work too.  Samples a pass
+    // only fills in are guesses at its resolution and go into the
+    // preview alone, which is blown up to blocks and handed to the
+    // listener as each pass finishes.
+    void preview() {
+        for (int step = PREVIEW_STEP; step > 1 && !cancelled(); step /= 2) {
+            int     right = (width - 1) / step;
+            int     bottom = (height - 1) / step;
+
+            escapeStrip(0, 0, step, 0, right + 1);
+            escapeStrip(0, bottom * step, step, 0, right + 1);
+            escapeStrip(0, step, 0, step, bottom - 1);
+            escapeStrip(right * step, step, 0, step, bottom - 1);
+            previewRect(step, 0, 0, right, bottom);
+
+            if (cancelled())
+            {
+                return;
+            }
+
+            blowUp(step);
+
+            if (listener != null)
+            {
+                listener.previewCompleted(preview, step);
+            }
+        }
+    }
+
+
+    // Subdivide the part of the preview lattice from sample (i0, j0)
+    // to (i1, j1), whose edge has been evaluated.  Quarters share
+    // the middle row and column.
+    void previewRect(int step, int i0, int j0, int i1, int j1) {
+        if (i1 - i0 < 2 || j1 - j0 < 2 || cancelled())
+        {
+            return;
+        }
+
+        int     base = counts[(j0 * width + i0) * step];
+        boolean same = true;
+
+        for (int i = i0; i <= i1 && same; i++) {
+            same = counts[(j0 * width + i) * step] == base && counts[(j1 * width + i) * step] == base;
+        }
+
+        for (int j = j0; j <= j1 && same; j++) {
+            same = counts[(j * width + i0) * step] == base && counts[(j * width + i1) * step] == base;
+        }
+
+        if (same)
+        {
+            for (int j = j0 + 1; j < j1; j++) {
+                for (int i = i0 + 1; i < i1; i++) {
+                    preview[(j * width + i) * step] = base;
+                }
+            }
+
+            return;
+        }
+
+        int     im = (i0 + i1) / 2;
+        int     jm = (j0 + j1) / 2;
+
+        escapeStrip(im * step, (j0 + 1) * step, 0, step, j1 - j0 - 1);
+        escapeStrip((i0 + 1) * step, jm * step, step, 0, i1 - i0 - 1);
+
+        previewRect(step, i0, j0, im, jm);
+        previewRect(step, im, j0, i1, jm);
+        previewRect(step, i0, jm, im, j1);
+        previewRect(step, im, jm, i1, j1);
+    }
+
+
+    // Spread each sample of the lattice over the step x step block
+    // below and to the right of it.  Evaluated samples are in the
+    // counts, filled ones only in the preview.
+    void blowUp(int step) {
+        for (int y = 0; y < height; y += step) {
+            for (int x = 0; x < width; x += step) {
+                int     p = y * width + x;
+                int     value = (counts[p] != UNKNOWN ? counts[p] : preview[p]);
+
+                for (int j = y; j < Math.min(y + step, height); j++) {
+                    Arrays.fill(preview, j * width + x, j * width + Math.min(x + step, width), value);
+                }
+            }
+        }
+    }
+
+
+    // Row y lies at the conjugate of row mirrorSum() - y.  Only
+    // meaningful if the view is not rotated.
+    double mirrorSum() {
+        return -2.0 * (originIm + originImLo) / vIm - 2 * offsetY;
+    }
+
+
+    // If the rows of the view pair up as conjugates, the rows on the
+    // larger side of the real axis, including the axis and any rows
+    // with no partner; the others can be copied from them.  Null if
+    // the view is not symmetric or symmetry is turned off.
+    Rectangle symmetricHalf() {
+        if (!symmetry || hIm != 0.0 || vRe != 0.0 || vIm == 0.0)
+        {
+            return null;
+        }
+
+        double  sum = mirrorSum();
+        long    pairs = Math.round(sum);
+
+        if (Math.abs(sum - pairs) > SYMMETRY_TOLERANCE || pairs < 2 || pairs > 2L * height - 4)
+        {
+            return null;
+        }
+
+        int     axis = (int) (pairs / 2);
+
+        if (2 * axis >= height - 1)
+        {
+            // The axis is in the lower half, so keep the rows above
+            return new Rectangle(0, 0, width, axis + 1);
+        }
+        else
+        {
+            int     top = (int) ((pairs + 1) / 2);
+
+            return new Rectangle(0, top, width, height - top);
+        }
+    }
+
+
+    // Copy the rendered rows of half onto their conjugate rows,
+    // flipping the kept orbits too.
+    void mirror(Rectangle half) {
+        if (cancelled())
+        {
+            return;
+        }
+
+        int     pairs = (int) Math.round(mirrorSum());
+        int     first = -1;
+        int     last = -1;
+
+        for (int y = 0; y < height; y++) {
+            if (y >= half.y && y < half.y + half.height)
+            {
+                continue;
+            }
+
+            int     from = (pairs - y) * width;
+            int     to = y * width;
+
+            System.arraycopy(counts, from, counts, to, width);
+
+            if (orbits != null)
+            {
+                mirrorOrbits(from, to);
+            }
+
+            first = (first < 0 ? y : first);
+            last = y;
+        }
+
+        if (first < 0)
+        {
+            return;
+        }
+
+        if (stats != null)
+        {
+            stats.pixelsMirrored.add((long) (last - first + 1) * width);
+        }
+
+        if (listener != null)
+        {
+            listener.subImageCompleted(new SubImage(new Rectangle(0, first, width, last - first + 1)));
+        }
+    }
+
+
+    // Copy the kept orbits of the row starting at pixel from to the
+    // row starting at pixel to, reflected in the real axis.
+    void mirrorOrbits(int from, int to) {
+        for (int x = 0; x < width; x++) {
+            double  zr = orbits.re(from + x);
+
+            if (Double.isNaN(zr))
+            {
+                orbits.drop(to + x);
+            }
+            else
+            {
+                orbits.keep(to + x, zr, (zr == INTERIOR ? 0.0 : -orbits.im(from + x)));
+            }
+        }
+    }
+
+
+    // Raise the iteration limit without starting over.  Pixels that
+    // escaped already have their final counts.  Those that reached
+    // the old limit carry on from the z they stopped at, and those
+    // that only got the old limit by being filled in are evaluated
+    // again.  Then the subdivision is run again, which only needs to
+    // work on the pixels that are unknown and on sub images whose
+    // boundary no longer matches.  The counts come out the same as
+    // from a fresh render at the new limit.
+    //
+    // Needs orbits to be kept (setResumable), a complete render at
+    // double precision and a higher limit; otherwise the picture is
+    // simply rendered again.
+    public void raiseLimit(int limit) {
+        int     old = iterationLimit;
+
+        setLimit(limit);
+
+        if (limit <= old || orbits == null || precision != DOUBLE || membership || !complete)
+        {
+            clear();
+            drawPicture();
+            return;
+        }
+
+        Rectangle   half = symmetricHalf();
+
+        complete = false;
+
+        if (half == null)
+        {
+            resumeOrbits(old, 0, height);
+        }
+        else
+        {
+            // The other rows are copied over again afterwards
+            resumeOrbits(old, half.y, half.y + half.height);
+        }
+
+        if (cancelled())
+        {
+            // Some pixels still have the old limit and can't be told
+            // apart from ones that escaped there
+            clear();
+            return;
+        }
+
+        drawPicture();
+    }
+
+
+    void resumeOrbits(int old, int first, int last) {
+        resumeRows(old, first, last);
+    }
+
+
+    // Bring the pixels in rows first to last - 1 that stopped at the
+    // old limit up to the current one.
+    void resumeRows(int old, int first, int last) {
+        for (int y = first; y < last && !cancelled(); y++) {
+            for (int x = 0; x < width; x++) {
+                int     p = y * width + x;
+
+                if (counts[p] != old)
+                {
+                    continue;
+                }
+
+                double  zr = orbits.re(p);
+
+                if (Double.isNaN(zr))
+                {
+                    counts[p] = UNKNOWN;
+                }
+                else if (zr == INTERIOR)
+                {
+                    counts[p] = iterationLimit;
+                }
+                else
+                {
+                    int     gx = x + offsetX;
+                    int     gy = y + offsetY;
+
+                    counts[p] = iterate(originRe + gx * hRe + gy * vRe, originIm + gx * hIm + gy * vIm,
+                                        zr, orbits.im(p), old, p);
+
+                    // Reaching the new limit keeps the orbit again
+                    if (counts[p] < iterationLimit)
+                    {
+                        orbits.drop(p);
+                    }
+                }
+            }
+        }
+    }
+
+
+    // A render is abandoned at the next strip or sub image once a
+    // newer generation has been asked for.  Without a scheduler it
+    // is never cancelled.
+    public void setGenerations(AtomicLong latest)
+    {
+        latestGeneration = latest;
+    }
+
+    void startGeneration(long g)
+    {
+        generation = g;
+    }
+
+    public boolean cancelled()
+    {
+        return latestGeneration != null && latestGeneration.get() != generation;
+    }
+
+    // False if the last render was cancelled part way, in which
+    // case some counts are still UNKNOWN.
+    public boolean isComplete() { return complete; }
+
+
+
+    public void initialize(Complex ul, Complex lr) {
+        Rectangle   r = new Rectangle(0, 0, width, height);
+
+        vDelta = new Complex(0.0, (lr.imag() - ul.imag())/(1.0 * height));
+        hDelta = new Complex((lr.real() - ul.real())/(1.0 * width));
+
+        originRe = ul.real();
+        originIm = ul.imag();
+        originReLo = 0.0;
+        originImLo = 0.0;
+        offsetX = 0;
+        offsetY = 0;
+        hRe = hDelta.real();
+        hIm = hDelta.imag();
+        vRe = vDelta.real();
+        vIm = vDelta.imag();
+
+        fullPicture = new SubImage(r);
+        clear();
+
+        if (deep != null)
+        {
+            deep.setOrigin(new BigDecimal(ul.real()), new BigDecimal(ul.imag()));
+        }
+    }
+
+
+    // Set up the view of a part of a bigger picture: pixel (0, 0)
+    // is pixel (x, y) of a picture with upper left corner ul and
+    // pixels h apart across and v down.  Every point is worked out
+    // from ul as in a render of the whole picture, so the counts are
+    // the same as that render's.
+    public void initialize(Complex ul, double h, double v, int x, int y) {
+        initialize(ul, new Complex(ul.real() + width * h, ul.imag() + height * v));
+
+        hRe = h;
+        vIm = v;
+        hDelta = new Complex(hRe, hIm);
+        vDelta = new Complex(vRe, vIm);
+        offsetX = x;
+        offsetY = y;
+    }
+
+
+    // Set up a square view size units across, centered on a point
+    // given to any precision.  Turns deep zoom on, since the center
+    // may not fit in a double.
+    public void initialize(BigDecimal centerRe, BigDecimal centerIm, double size) {
+        double      spacing = size / width;
+        BigDecimal  h = new BigDecimal(spacing);
+        BigDecimal  re = centerRe.subtract(h.multiply(BigDecimal.valueOf(width / 2)));
+        BigDecimal  im = centerIm.add(h.multiply(BigDecimal.valueOf(height / 2)));
+
+        setDeepZoom(true);
+        initialize(new Complex(re.doubleValue(), im.doubleValue()),
+                   new Complex(re.doubleValue() + size, im.doubleValue() - spacing * height));
+
+        hRe = spacing;
+        hIm = 0.0;
+        vRe = 0.0;
+        vIm = -spacing;
+        hDelta = new Complex(hRe, hIm);
+        vDelta = new Complex(vRe, vIm);
+        deep.setOrigin(re, im);
+    }
+
+
+    // Zoom in by factor around pixel (cx, cy).  The new view is
+    // snapped to the old pixel grid, so every factor'th pixel across
+    // and down lands exactly on an old pixel, and those counts are
+    // carried over.  drawPicture() then only evaluates the rest.
+    public void zoom(int cx, int cy, int factor) {
+        int     ox = cx - width / (2 * factor);
+        int     oy = cy - height / (2 * factor);
+        int     old[] = counts;
+
+        counts = (spare != null ? spare : new int [width * height]);
+        spare = old;
+        clear();
+        complete = false;
+
+        moveOrigin(ox, oy);
+        hRe /= factor;
+        hIm /= factor;
+        vRe /= factor;
+        vIm /= factor;
+        hDelta = new Complex(hRe, hIm);
+        vDelta = new Complex(vRe, vIm);
+
+        for (int j = 0; j < height; j += factor) {
+            int     oldY = oy + j / factor;
+
+            if (oldY < 0 || oldY >= height) continue;
+
+            for (int i = 0; i < width; i += factor) {
+                int     oldX = ox + i / factor;
+
+                if (oldX >= 0 && oldX < width)
+                {
+                    counts[j * width + i] = old[oldY * width + oldX];
+                }
+            }
+        }
+    }
+
+
+    // Slide the picture dx pixels right and dy pixels down, moving
+    // the view the other way by whole pixels.  The counts that are
+    // still on screen are shifted over and only the strips that
+    // come into view are rendered.  If the last render did not
+    // finish, the whole picture is filled in around the kept counts.
+    public void pan(int dx, int dy) {
+        if (Math.abs(dx) >= width || Math.abs(dy) >= height || !complete)
+        {
+            shift(dx, dy);
+            drawPicture();
+            return;
+        }
+
+        shift(dx, dy);
+        complete = false;
+        choosePrecision();
+
+        int     keepX = Math.max(dx, 0);
+        int     keepW = width - Math.abs(dx);
+
+        // The strip uncovered at the left or right edge, full height
+        if (dx != 0)
+        {
+            renderRegion(new Rectangle(dx > 0 ? 0 : width + dx, 0, Math.abs(dx), height));
+        }
+
+        // The strip uncovered at the top or bottom, between the
+        // columns that were kept
+        if (dy != 0)
+        {
+            renderRegion(new Rectangle(keepX, dy > 0 ? 0 : height + dy, keepW, Math.abs(dy)));
+        }
+
+        complete = !cancelled();
+    }
+
+
+    // Move the origin and the counts that stay in view; everything
+    // else becomes UNKNOWN.
+    void shift(int dx, int dy) {
+        int     old[] = counts;
+
+        counts = (spare != null ? spare : new int [width * height]);
+        spare = old;
+        clear();
+
+        moveOrigin(-dx, -dy);
+
+        int     keepX = Math.max(dx, 0);
+        int     keepW = width - Math.abs(dx);
+
+        if (Math.abs(dx) < width)
+        {
+            for (int j = Math.max(dy, 0); j < height && j - dy < height; j++) {
+                System.arraycopy(old, (j - dy) * width + keepX - dx, counts, j * width + keepX, keepW);
+            }
+        }
+    }
+
+
+    // Move the origin by (dx, dy) pixels, in double-double so a long
+    // run of zooms and pans does not lose the position.
+    void moveOrigin(int dx, int dy) {
+        dx += offsetX;
+        dy += offsetY;
+        offsetX = 0;
+        offsetY = 0;
+
+        DoubleDouble    re = new DoubleDouble(originRe, originReLo);
+        DoubleDouble    im = new DoubleDouble(originIm, originImLo);
+
+        re.add(DoubleDouble.product(dx, hRe)).add(DoubleDouble.product(dy, vRe));
+        im.add(DoubleDouble.product(dx, hIm)).add(DoubleDouble.product(dy, vIm));
+
+        originRe = re.hi;
+        originReLo = re.lo;
+        originIm = im.hi;
+        originImLo = im.lo;
+
+        if (deep != null)
+        {
+            deep.move(dx, dy);
+        }
+    }
+
+
+    // Render just one rectangle of the picture with the subdivision
+    // engine.
+    public void renderRegion(Rectangle r) {
+        SubImage    s = new SubImage(r);
+
+        drawSubImageBoundary(s);
+        completeAndDraw(s);
+    }
+
+
+    void paintDone(long start) {
+        if (stats != null && start != 0L)
+        {
+            stats.paintNanos.add(System.nanoTime() - start);
+        }
+    }
+
+
+    public BufferedImage toImage() {
+        BufferedImage   image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        long            start = startClock();
+
+        palette.recolor(counts, image);
+        paintDone(start);
+
+        return image;
+    }
+
+
+
+    // Command line entry point for rendering without a window:
+    //
+    //      java MandelRenderer [-size w h] [-limit n] [-threads n]
+    //                          [-nocardioid] [-noperiodicity] [-nosymmetry]
+    //                          [-vector] [-leaf n] [-cycle n]
+    //                          [-stats] [-deep] [-raise n]
+    //                          [-distance] [-membership] [-trace]
+    //                          [-tile n] [-counts file] [-cache dir]
+    //                          [-progressive]
+    //                          [-view re1 im1 re2 im2]
+    //                          [-center re im size] [-o file.png]
+    //
+    // The view gives the upper left and lower right corners.
+    // -center gives a square view instead, size units across, with
+    // the center read to full precision; it and -deep allow views
+    // finer than a double can resolve.  -raise renders once more at
+    // a higher limit, carrying on from the first render.  -distance
+    // fills disks found by distance estimation, and -membership only
+    // renders inside or outside.  With
+    // -threads the fork/join engine is used, and with -trace the
+    // boundary tracing engine.  -tile renders
+    // the picture n x n pixels at a time into a memory-mapped count
+    // file and streams the PNG out from it, so the picture can be
+    // bigger than the heap; -counts keeps that file.  -cache keeps
+    // tiles of views on the power-of-two lattice in dir, and reuses
+    // them on later runs.  -progressive runs the preview passes
+    // first and prints when each was ready.  -stats prints how much
+    // work the render did after the timing line.
+    public static void main(String args[]) throws IOException {
+        int         w = 768;
+        int         h = 768;
+        int         maxIter = 256;
+        Complex     c1 = new Complex(-2.1, 2.1);
+        Complex     c2 = new Complex(2.1, -2.1);
+        String      outName = "mandel.png";
+        int         threads = 0;
+        boolean     cardioid = true;
+        boolean     periodicity = true;
+        boolean     symmetric = true;
+        boolean     vector = false;
+        int         leaf = 0;
+        int         cycle = 0;
+        boolean     printStats = false;
+        boolean     deepZoom = false;
+        int         raised = 0;
+        boolean     distance = false;
+        boolean     inside = false;
+        boolean     trace = false;
+        boolean     progressive = false;
+        int         tile = 0;
+        String      countName = null;
+        String      cacheName = null;
+        BigDecimal  centerRe = null;
+        BigDecimal  centerIm = null;
+        double      size = 0.0;
+
+        System.setProperty("java.awt.headless", "true");
+
+        for (int a = 0; a < args.length; a++) {
+            if (args[a].equals("-size")) {
+                w = Integer.parseInt(args[++a]);
+                h = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-limit")) {
+                maxIter = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-view")) {
+                c1 = new Complex(Double.parseDouble(args[a + 1]), Double.parseDouble(args[a + 2]));
+                c2 = new Complex(Double.parseDouble(args[a + 3]), Double.parseDouble(args[a + 4]));
+                a += 4;
+            }
+            else if (args[a].equals("-threads")) {
+                threads = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-nocardioid")) {
+                cardioid = false;
+            }
+            else if (args[a].equals("-noperiodicity")) {
+                periodicity = false;
+            }
+            else if (args[a].equals("-nosymmetry")) {
+                symmetric = false;
+            }
+            else if (args[a].equals("-vector")) {
+                vector = true;
+            }
+            else if (args[a].equals("-leaf")) {
+                leaf = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-cycle")) {
+                cycle = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-center")) {
+                centerRe = new BigDecimal(args[a + 1]);
+                centerIm = new BigDecimal(args[a + 2]);
+                size = Double.parseDouble(args[a + 3]);
+                a += 3;
+            }
+            else if (args[a].equals("-raise")) {
+                raised = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-distance")) {
+                distance = true;
+            }
+            else if (args[a].equals("-membership")) {
+                inside = true;
+            }
+            else if (args[a].equals("-trace")) {
+                trace = true;
+            }
+            else if (args[a].equals("-progressive")) {
+                progressive = true;
+            }
+            else if (args[a].equals("-tile")) {
+                tile = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-counts")) {
+                countName = args[++a];
+            }
+            else if (args[a].equals("-cache")) {
+                cacheName = args[++a];
+            }
+            else if (args[a].equals("-deep")) {
+                deepZoom = true;
+            }
+            else if (args[a].equals("-stats")) {
+                printStats = true;
+            }
+            else if (args[a].equals("-o")) {
+                outName = args[++a];
+            }
+            else {
+                System.err.println("Unknown option " + args[a]);
+                System.exit(1);
+            }
+        }
+
+        MandelRenderer  renderer = null;
+        int             rw = (tile > 0 ? tile : w);
+        int             rh = (tile > 0 ? tile : h);
+
+        if (trace && threads > 0)
+        {
+            System.err.println("-trace and -threads cannot be used together");
+            System.exit(1);
+        }
+        else if (tile > 0 && (centerRe != null || raised > 0 || progressive))
+        {
+            System.err.println("-tile cannot be used with -center, -raise or -progressive");
+            System.exit(1);
+        }
+        else if (trace)
+        {
+            renderer = new BoundaryTracer(rw, rh);
+        }
+        else if (threads > 0)
+        {
+            renderer = new ParallelRenderer(rw, rh, threads);
+        }
+        else
+        {
+            renderer = new MandelRenderer(rw, rh);
+        }
+
+        renderer.setLimit(maxIter);
+        renderer.setPalette(new Palette(maxIter, cycle));
+        renderer.setCardioidCheck(cardioid);
+        renderer.setPeriodicityCheck(periodicity);
+        renderer.setSymmetry(symmetric);
+        renderer.setDistanceFill(distance);
+        renderer.setMembership(inside);
+        renderer.setVectorKernel(vector);
+        renderer.setLeafSize(leaf);
+        renderer.setDeepZoom(deepZoom);
+        renderer.setResumable(raised > 0);
+        renderer.setProgressive(progressive);
+
+        if (printStats)
+        {
+            renderer.setStats(new RenderStats());
+        }
+
+        if (cacheName != null)
+        {
+            renderer.setTileCache(new TileCache(CACHE_TILES, Paths.get(cacheName), CACHE_BYTES));
+        }
+
+        if (tile > 0)
+        {
+            renderTiled(renderer, c1, c2, w, h, countName, new Palette(maxIter, cycle), outName);
+        }
+        else
+        {
+            renderWhole(renderer, c1, c2, centerRe, centerIm, size, raised, outName);
+        }
+
+        if (renderer instanceof ParallelRenderer)
+        {
+            ((ParallelRenderer) renderer).shutdown();
+        }
+
+        if (printStats)
+        {
+            System.out.println(renderer.getStats().summary());
+        }
+
+        if (cacheName != null)
+        {
+            TileCache   cache = renderer.getTileCache();
+
+            System.out.println("Tile cache: " + cache.getMemoryHits() + " memory hits, " + cache.getDiskHits()
+                               + " disk hits, " + cache.getMisses() + " misses, "
+                               + (cache.getDiskBytes() >> 10) + " KB on disk");
+        }
+    }
+
+
+    static void renderWhole(MandelRenderer renderer, Complex c1, Complex c2, BigDecimal centerRe,
+                            BigDecimal centerIm, double size, int raised, String outName) throws IOException {
+        int     maxIter = renderer.getLimit();
+
+        if (centerRe != null)
+        {
+            renderer.initialize(centerRe, centerIm, size);
+        }
+        else
+        {
+            renderer.initialize(c1, c2);
+        }
+
+        long    start = System.nanoTime();
+
+        if (renderer.isProgressive())
+        {
+            renderer.setListener(new Listener() {
+                public void subImageCompleted(SubImage s) {
+                }
+
+                public void previewCompleted(int preview[], int step) {
+                    System.out.printf("1/%d preview after %.1f ms%n", step * step, (System.nanoTime() - start) / 1.0e6);
+                }
+            });
+        }
+
+        renderer.drawPicture();
+        long    elapsed = System.nanoTime() - start;
+
+        if (raised > 0)
+        {
+            System.out.println("Rendered at limit " + maxIter + " in " + (elapsed / 1000000) + " ms");
+
+            long    raiseStart = System.nanoTime();
+
+            renderer.raiseLimit(raised);
+            System.out.println("Raised limit to " + raised + " in " + ((System.nanoTime() - raiseStart) / 1000000) + " ms");
+        }
+
+        ImageIO.write(renderer.toImage(), "png", new File(outName));
+
+        System.out.println("Rendered " + renderer.getWidth() + "x" + renderer.getHeight() + " in "
+                           + (elapsed / 1000000) + " ms to " + outName
+                           + (renderer.precision != DOUBLE ? " using " + renderer.getPrecisionName() : ""));
+    }
+
+
+    // Render a w x h picture a tile at a time into a count file,
+    // a temporary one unless countName is given, and stream it out
+    // as a PNG.
+    static void renderTiled(MandelRenderer renderer, Complex c1, Complex c2, int w, int h,
+                            String countName, Palette palette, String outName) throws IOException {
+        Path    countPath = (countName != null ? Paths.get(countName) : Files.createTempFile("mandel", ".counts"));
+
+        try (CountFile counts = new CountFile(countPath, w, h)) {
+            TiledRender     tiled = new TiledRender(renderer, counts);
+            long            start = System.nanoTime();
+
+            tiled.render(c1, c2);
+
+            long            rendered = System.nanoTime();
+
+            tiled.writePng(new FileOutputStream(outName), palette);
+
+            System.out.println("Rendered " + w + "x" + h + " in " + ((rendered - start) / 1000000) + " ms, "
+                               + renderer.getWidth() + "x" + renderer.getHeight() + " tiles, and wrote "
+                               + outName + " in " + ((System.nanoTime() - rendered) / 1000000) + " ms");
+        }
+        finally
+        {
+            if (countName == null)
+            {
+                Files.delete(countPath);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+// Map escape counts to colors through a lookup table.
+//
+// The count buffer is the real picture; colors are worked out from
+// it when it is displayed or saved.  A new palette can be applied to
+// a buffer that has already been rendered without redoing any of the
+// fractal arithmetic.
+
+package mandel;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+public class Palette {
+
+    static final int    CYCLE = 255;    // every channel repeats after this many counts
+
+    int     argb[];
+    int     offset;
+
+
+    // The original coloring: white for points that escape at once,
+    // black for points that never escape, and the channels cycling
+    // at different rates in between.  The offset shifts the cycle
+    // and may be negative.
+    public Palette(int iterationLimit, int cycleOffset) {
+        argb = new int [iterationLimit + 1];
+        offset = Math.floorMod(cycleOffset, CYCLE);
+
+        argb[0] = 0xFFFFFFFF;
+        argb[iterationLimit] = 0xFF000000;
+
+        for (int velocity = 1; velocity < iterationLimit; velocity++) {
+            int shifted = velocity + offset;
+            int red = (shifted * 2) % CYCLE;
+            int green = (shifted * 7) % CYCLE;
+            int blue = (shifted * 11) % CYCLE;
+
+            argb[velocity] = 0xFF000000 | (red << 16) | (green << 8) | blue;
+        }
+    }
+
+    public Palette(int iterationLimit) {
+        this(iterationLimit, 0);
+    }
+
+
+    public int getLimit() { return argb.length - 1; }
+    public int getOffset() { return offset; }
+
+
+    // The same palette with the color cycle moved along by step,
+    // which may be negative.
+    public Palette cycled(int step) {
+        return new Palette(getLimit(), offset + Math.floorMod(step, CYCLE));
+    }
+
+
+    public int color(int velocity) {
+        if (velocity <= 0) return argb[0];
+        if (velocity >= argb.length) return argb[argb.length - 1];
+
+        return argb[velocity];
+    }
+
+
+    // Map a whole count buffer to pixels in one pass.
+    public void recolor(int counts[], int pixels[]) {
+        int     top = argb.length - 1;
+
+        for (int p = 0; p < counts.length; p++) {
+            int     velocity = counts[p];
+
+            pixels[p] = argb[velocity <= 0 ? 0 : (velocity > top ? top : velocity)];
+        }
+    }
+
+
+    // Recolor straight into an image's raster.  The image must be
+    // TYPE_INT_RGB or TYPE_INT_ARGB and the same size as the buffer.
+    public void recolor(int counts[], BufferedImage image) {
+        recolor(counts, ((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+    }
+}
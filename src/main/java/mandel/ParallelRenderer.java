@@ -0,0 +1,151 @@
+// Fork/join version of the subdivision engine.
+//
+// Once a sub image's boundary is known, its four quadrants never
+// write outside their own rectangles: each quadrant computes its
+// own inner edges (see drawUpperLeftSubImage and friends) and then
+// fills or splits itself.  So the quadrants can run at the same
+// time without any locking, and the counts come out exactly the
+// same as from the sequential engine.
+
+package mandel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+public class ParallelRenderer extends MandelRenderer {
+
+    // Sub images with fewer pixels than this are finished on the
+    // current thread with the sequential engine.
+    public static final int DEFAULT_THRESHOLD = 32 * 32;
+
+    // Rows handed to one task when carrying orbits on to a raised
+    // limit.
+    static final int        RESUME_ROWS = 8;
+
+
+    class QuadrantTask extends RecursiveAction {
+        static final long   serialVersionUID = 1L;
+
+        SubImage    quadrant;
+        int         position;
+
+        QuadrantTask(SubImage s, int p) {
+            quadrant = s;
+            position = p;
+        }
+
+        protected void compute() {
+            switch (position) {
+                case 0: drawUpperLeftSubImage(quadrant); break;
+                case 1: drawUpperRightSubImage(quadrant); break;
+                case 2: drawLowerLeftSubImage(quadrant); break;
+                default: drawLowerRightSubImage(quadrant); break;
+            }
+
+            completeAndDraw(quadrant);
+        }
+    }
+
+
+    // Rows of pixels brought up to a raised limit as one task.
+    class ResumeTask extends RecursiveAction {
+        static final long   serialVersionUID = 1L;
+
+        int         old;
+        int         first;
+        int         last;
+
+        ResumeTask(int o, int f, int l) {
+            old = o;
+            first = f;
+            last = l;
+        }
+
+        protected void compute() {
+            if (last - first <= RESUME_ROWS)
+            {
+                resumeRows(old, first, last);
+            }
+            else
+            {
+                int     middle = (first + last) >>> 1;
+
+                invokeAll(new ResumeTask(old, first, middle), new ResumeTask(old, middle, last));
+            }
+        }
+    }
+
+
+    ForkJoinPool        pool;
+    int                 threshold;
+
+
+    public ParallelRenderer(int w, int h, int threads) {
+        super(w, h);
+        pool = new ForkJoinPool(threads);
+        threshold = DEFAULT_THRESHOLD;
+    }
+
+    public ParallelRenderer(int w, int h) {
+        this(w, h, Runtime.getRuntime().availableProcessors());
+    }
+
+
+    public void setThreshold(int pixels)
+    {
+        threshold = pixels;
+    }
+
+    public int getParallelism() { return pool.getParallelism(); }
+
+
+    public void fillInSubImage(SubImage s) {
+        if (cancelled())
+        {
+            return;
+        }
+        else if (s.getWidth() * s.getHeight() < threshold)
+        {
+            super.fillInSubImage(s);
+        }
+        else if (ForkJoinTask.getPool() != pool)
+        {
+            // Called from outside the pool, e.g. by drawPicture()
+            pool.invoke(new RecursiveAction() {
+                static final long   serialVersionUID = 1L;
+
+                protected void compute() {
+                    fillInSubImage(s);
+                }
+            });
+        }
+        else
+        {
+            SubImage        quadrants[] = s.subRects();
+            List<QuadrantTask> tasks = new ArrayList<QuadrantTask>(4);
+
+            for (int q = 0; q < 4; q++) {
+                if (quadrants[q] != null)
+                {
+                    tasks.add(new QuadrantTask(quadrants[q], q));
+                }
+            }
+
+            ForkJoinTask.invokeAll(tasks);
+        }
+    }
+
+
+    void resumeOrbits(int old, int first, int last) {
+        pool.invoke(new ResumeTask(old, first, last));
+    }
+
+
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+}
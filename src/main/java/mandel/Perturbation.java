@@ -0,0 +1,214 @@
+// Deep zoom by perturbation.
+//
+// Once the pixel spacing gets near the precision of a double, the
+// pixels can no longer be told apart and the picture goes blocky.
+// Instead, one reference orbit Z is worked out in BigDecimal at the
+// center of the view and kept as doubles.  Each pixel c = C + dc
+// then only iterates its small offset from that orbit,
+//
+//      d' = (2Z + d) d + dc
+//
+// which needs no more than double precision, since d and dc are
+// small.  The view origin is tracked in BigDecimal too, so zooming
+// and panning never lose the position.
+//
+// When the pixel's orbit passes closer to 0 than its offset is
+// large, the offset no longer describes it well (a glitch).  The
+// pixel is then rebased: z itself becomes the offset from the start
+// of the reference orbit, which begins at 0.  The same is done when
+// a pixel outlives a reference orbit that escaped.  So any point
+// of the view works as the reference.
+//
+// Doubles still limit the offsets to about 1e-300, so zooms stop
+// there.
+
+package mandel;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+class Perturbation {
+
+    // Decimal digits carried beyond what the pixel spacing needs
+    static final int    GUARD_DIGITS = 20;
+
+    MandelRenderer  renderer;
+    BigDecimal      originRe;
+    BigDecimal      originIm;
+    int             refX;
+    int             refY;
+    double          orbitRe[];
+    double          orbitIm[];
+    int             last;
+    boolean         stale;
+
+
+    Perturbation(MandelRenderer r) {
+        renderer = r;
+        originRe = new BigDecimal(r.originRe);
+        originIm = new BigDecimal(r.originIm);
+        orbitRe = null;
+        orbitIm = null;
+        last = 0;
+        stale = true;
+    }
+
+
+    void setOrigin(BigDecimal re, BigDecimal im) {
+        originRe = re;
+        originIm = im;
+        stale = true;
+    }
+
+
+    // Move the origin by (dx, dy) pixels at the current spacing.
+    // The spacing is a double, so this is exact.
+    void move(int dx, int dy) {
+        BigDecimal  hRe = new BigDecimal(renderer.hRe);
+        BigDecimal  hIm = new BigDecimal(renderer.hIm);
+        BigDecimal  vRe = new BigDecimal(renderer.vRe);
+        BigDecimal  vIm = new BigDecimal(renderer.vIm);
+        BigDecimal  bx = BigDecimal.valueOf(dx);
+        BigDecimal  by = BigDecimal.valueOf(dy);
+
+        originRe = originRe.add(bx.multiply(hRe)).add(by.multiply(vRe));
+        originIm = originIm.add(bx.multiply(hIm)).add(by.multiply(vIm));
+        stale = true;
+    }
+
+
+    double spacing() {
+        return Math.max(Math.hypot(renderer.hRe, renderer.hIm), Math.hypot(renderer.vRe, renderer.vIm));
+    }
+
+
+    // Bring the renderer's origin into line with the exact one, and
+    // the reference orbit up to date if the renderer is going to use
+    // it.  Called before a render starts, on the thread that starts it.
+    void prepare() {
+        DoubleDouble    re = DoubleDouble.valueOf(originRe);
+        DoubleDouble    im = DoubleDouble.valueOf(originIm);
+
+        renderer.originRe = re.hi;
+        renderer.originReLo = re.lo;
+        renderer.originIm = im.hi;
+        renderer.originImLo = im.lo;
+
+        if (renderer.precision == MandelRenderer.PERTURBATION && stale)
+        {
+            stale = !referenceOrbit();
+        }
+    }
+
+
+    // Iterate the center of the view from 0 in BigDecimal, keeping
+    // each z as doubles, until it escapes or passes the limit.  This
+    // can take seconds at high limits, so it stops early if the
+    // render is cancelled, and returns false; the orbit is then only
+    // good as far as it got, and is worked out again next time.
+    boolean referenceOrbit() {
+        int             limit = renderer.iterationLimit;
+        int             digits = GUARD_DIGITS + (int) Math.ceil(-Math.log10(spacing()));
+        MathContext     mc = new MathContext(digits);
+        BigDecimal      two = BigDecimal.valueOf(2);
+
+        refX = renderer.width / 2;
+        refY = renderer.height / 2;
+
+        BigDecimal      bx = BigDecimal.valueOf(refX + renderer.offsetX);
+        BigDecimal      by = BigDecimal.valueOf(refY + renderer.offsetY);
+        BigDecimal      cr = originRe.add(bx.multiply(new BigDecimal(renderer.hRe)))
+                                     .add(by.multiply(new BigDecimal(renderer.vRe)), mc);
+        BigDecimal      ci = originIm.add(bx.multiply(new BigDecimal(renderer.hIm)))
+                                     .add(by.multiply(new BigDecimal(renderer.vIm)), mc);
+        BigDecimal      zr = BigDecimal.ZERO;
+        BigDecimal      zi = BigDecimal.ZERO;
+
+        orbitRe = new double [limit + 2];
+        orbitIm = new double [limit + 2];
+        last = 0;
+
+        for (int n = 1; n <= limit + 1; n++) {
+            if (renderer.cancelled())
+            {
+                return false;
+            }
+
+            BigDecimal  zr2 = zr.multiply(zr, mc);
+            BigDecimal  zi2 = zi.multiply(zi, mc);
+
+            zi = exactZero(two.multiply(zr).multiply(zi, mc).add(ci, mc));
+            zr = exactZero(zr2.subtract(zi2).add(cr, mc));
+
+            orbitRe[n] = zr.doubleValue();
+            orbitIm[n] = zi.doubleValue();
+            last = n;
+
+            if (orbitRe[n] * orbitRe[n] + orbitIm[n] * orbitIm[n] > 4.0)
+            {
+                break;
+            }
+        }
+
+        return true;
+    }
+
+
+    // Rounding leaves the scale of a zero alone, so on the real axis
+    // zi would double its scale every iteration, and every sum with
+    // it would be worked out to that many digits.
+    static BigDecimal exactZero(BigDecimal b) {
+        return (b.signum() == 0 ? BigDecimal.ZERO : b);
+    }
+
+
+    // Escape count for pixel (x, y), counted the same way as
+    // MandelRenderer.escapeVelocity: the iterations made from z = c
+    // while |z| <= 2.  The shortcuts are not used here; the cardioid
+    // test and the cycle check both need c and z to better than
+    // double precision.
+    int escapeAt(int x, int y) {
+        double  orbitRe[] = this.orbitRe;
+        double  orbitIm[] = this.orbitIm;
+        int     limit = renderer.iterationLimit;
+        int     end = last;
+        double  dcr = (x - refX) * renderer.hRe + (y - refY) * renderer.vRe;
+        double  dci = (x - refX) * renderer.hIm + (y - refY) * renderer.vIm;
+        double  dr = dcr;
+        double  di = dci;
+        int     m = 1;
+        int     orbits = 0;
+
+        while (orbits < limit)
+        {
+            double  zr = orbitRe[m] + dr;
+            double  zi = orbitIm[m] + di;
+            double  z2 = zr * zr + zi * zi;
+
+            if (z2 > 4.0)
+            {
+                break;
+            }
+
+            // Rebase on a glitch or at the end of the reference
+            if (z2 < dr * dr + di * di || m == end)
+            {
+                dr = zr;
+                di = zi;
+                m = 0;
+            }
+
+            double  tr = 2.0 * orbitRe[m] + dr;
+            double  ti = 2.0 * orbitIm[m] + di;
+            double  nr = tr * dr - ti * di + dcr;
+
+            di = tr * di + ti * dr + dci;
+            dr = nr;
+            m += 1;
+            orbits += 1;
+        }
+
+        renderer.spent(orbits);
+        return orbits;
+    }
+}
@@ -0,0 +1,178 @@
+// Write a PNG a few pixels at a time, for pictures too big to hold
+// as a BufferedImage.
+//
+// Pixels go in row by row, in as many pieces per row as the caller
+// likes.  They are deflated as they arrive and the compressed data
+// is written out in IDAT chunks of CHUNK_BYTES, so the only buffers
+// are the deflater's and one chunk.  The picture is 8 bit RGB with
+// no filtering, which does well enough on the large flat areas of a
+// Mandelbrot picture.
+
+package mandel;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public class PngWriter implements Closeable {
+
+    static final byte   SIGNATURE[] = { (byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n' };
+    static final int    CHUNK_BYTES = 64 * 1024;
+    static final byte   NO_FILTER[] = { 0 };
+
+    DataOutputStream    out;
+    Deflater            deflater;
+    CRC32               crc;
+    byte                chunk[];
+    int                 used;           // bytes of chunk filled so far
+    byte                rgb[];
+    int                 width;
+    int                 height;
+    int                 x;
+    int                 y;
+
+
+    // Start a width x height picture on out.  Closing the writer
+    // closes out.
+    public PngWriter(OutputStream o, int w, int h) throws IOException {
+        out = new DataOutputStream(o);
+        deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        crc = new CRC32();
+        chunk = new byte [CHUNK_BYTES];
+        used = 0;
+        rgb = new byte [3 * 1024];
+        width = w;
+        height = h;
+        x = 0;
+        y = 0;
+
+        byte    header[] = new byte [13];
+
+        putInt(header, 0, w);
+        putInt(header, 4, h);
+        header[8] = 8;          // bits per channel
+        header[9] = 2;          // RGB
+        header[10] = 0;         // deflate
+        header[11] = 0;         // adaptive filtering, though every row uses none
+        header[12] = 0;         // not interlaced
+
+        out.write(SIGNATURE);
+        writeChunk("IHDR", header, header.length);
+    }
+
+
+    // Add len pixels, given as 0xRRGGBB, from pixels[off].  They
+    // carry on from where the last call stopped, wrapping onto the
+    // next row at the end of each one.
+    public void write(int pixels[], int off, int len) throws IOException {
+        while (len > 0) {
+            if (y >= height)
+            {
+                throw new IOException("More pixels than the picture holds");
+            }
+
+            if (x == 0)
+            {
+                deflate(NO_FILTER, 1);
+            }
+
+            int     n = Math.min(Math.min(len, width - x), rgb.length / 3);
+
+            for (int i = 0; i < n; i++) {
+                int     c = pixels[off + i];
+
+                rgb[3 * i] = (byte) (c >> 16);
+                rgb[3 * i + 1] = (byte) (c >> 8);
+                rgb[3 * i + 2] = (byte) c;
+            }
+
+            deflate(rgb, 3 * n);
+
+            off += n;
+            len -= n;
+            x += n;
+
+            if (x == width)
+            {
+                x = 0;
+                y++;
+            }
+        }
+    }
+
+
+    // Flush the last of the compressed data and end the file.  The
+    // picture must be complete.
+    public void close() throws IOException {
+        if (y != height)
+        {
+            throw new IOException("Picture ended after " + y + " of " + height + " rows");
+        }
+
+        deflater.finish();
+
+        while (!deflater.finished()) {
+            drain();
+        }
+
+        flushChunk();
+        deflater.end();
+        writeChunk("IEND", chunk, 0);
+        out.close();
+    }
+
+
+    void deflate(byte b[], int len) throws IOException {
+        deflater.setInput(b, 0, len);
+
+        while (!deflater.needsInput()) {
+            drain();
+        }
+    }
+
+
+    // Pull compressed bytes into the chunk buffer, writing it out
+    // as an IDAT chunk whenever it fills up.
+    void drain() throws IOException {
+        used += deflater.deflate(chunk, used, chunk.length - used);
+
+        if (used == chunk.length)
+        {
+            flushChunk();
+        }
+    }
+
+
+    void flushChunk() throws IOException {
+        if (used > 0)
+        {
+            writeChunk("IDAT", chunk, used);
+            used = 0;
+        }
+    }
+
+
+    void writeChunk(String type, byte data[], int len) throws IOException {
+        byte    t[] = type.getBytes("US-ASCII");
+
+        crc.reset();
+        crc.update(t);
+        crc.update(data, 0, len);
+
+        out.writeInt(len);
+        out.write(t);
+        out.write(data, 0, len);
+        out.writeInt((int) crc.getValue());
+    }
+
+
+    static void putInt(byte b[], int at, int v) {
+        b[at] = (byte) (v >> 24);
+        b[at + 1] = (byte) (v >> 16);
+        b[at + 2] = (byte) (v >> 8);
+        b[at + 3] = (byte) v;
+    }
+}
@@ -0,0 +1,475 @@
+// Render one picture on a number of RenderWorkers.
+//
+// The picture is cut into tiles, which go on a shared queue.  Each
+// worker connection has a thread that keeps PIPELINE tiles in
+// flight, taking the next one off the queue as each comes back, so
+// fast workers simply take more tiles and nothing has to be planned
+// up front.  If a worker fails or stops answering, its thread puts
+// the tiles it had in flight back on the front of the queue for the
+// others and gives up on it.  The counts go into a CountFile, as
+// with TiledRender, and can be written out from there the same way.
+//
+//      java mandel.RenderCoordinator [-workers host:port,...] [-spawn n]
+//                                    [-size w h] [-limit n] [-tile n]
+//                                    [-view re1 im1 re2 im2] [-costs]
+//                                    [-frames n] [-zoom f] [-timeout s]
+//                                    [-o file.png]
+//
+// -spawn starts n workers on this machine and stops them at the end.
+// -costs probes the view first and hands out the tiles by cost.
+// -frames renders a zoom into the middle of the view, each frame f
+// times (2 by default) closer than the last, and -o is then a
+// pattern such as zoom%03d.png.  With -costs, every frame after the
+// first takes its costs from the frame before.  -timeout is how long
+// a worker may take over one tile before its tiles go to the others;
+// by default it grows with the tile's area and the limit.
+
+package mandel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+
+public class RenderCoordinator {
+
+    // Tiles sent to a worker before waiting for the first to come
+    // back, so it is never idle waiting for the next job.
+    static final int        PIPELINE = 2;
+
+    // Milliseconds a worker may take over one tile before it is
+    // given up on: TIMEOUT, plus the time the tile would take if
+    // every pixel ran to the limit at SLOW_ITERATIONS per
+    // millisecond, unless a timeout is set.
+    static final int        TIMEOUT = 60000;
+    static final long       SLOW_ITERATIONS = 20000;
+
+    static final int        DEFAULT_TILE = 256;
+
+    // With costs, no tile should be expected to take more than this
+    // fraction of one worker's share of the frame, or be split below
+    // MIN_TILE across.
+    static final int        SPLIT_SHARE = 4;
+    static final int        MIN_TILE = 32;
+
+    List<InetSocketAddress>                 workers;
+    CountFile                               target;
+    ConcurrentLinkedDeque<TileProtocol.Job> pending;
+    AtomicInteger                           remaining;
+    AtomicInteger                           alive;
+    int                                     tilesDone[];
+    int                                     timeout;
+
+
+    public RenderCoordinator(List<InetSocketAddress> w, CountFile t) {
+        workers = w;
+        target = t;
+        pending = new ConcurrentLinkedDeque<>();
+        remaining = new AtomicInteger();
+        alive = new AtomicInteger();
+        tilesDone = new int [w.size()];
+        timeout = 0;
+    }
+
+
+    // Milliseconds to wait for any one tile; 0 scales it with the
+    // tile as described at TIMEOUT.
+    public void setTimeout(int ms)
+    {
+        timeout = ms;
+    }
+
+
+    int timeoutFor(TileProtocol.Job j) {
+        if (timeout > 0)
+        {
+            return timeout;
+        }
+
+        return (int) Math.min(Integer.MAX_VALUE, TIMEOUT + (long) j.width * j.height * j.limit / SLOW_ITERATIONS);
+    }
+
+
+    // Tiles each worker rendered in the last render.
+    public int[] getTilesDone() { return tilesDone.clone(); }
+
+
+    // Render the view from ul to lr at the given limit, mapped onto
+    // the count file as TiledRender maps it, in tiles of tile x tile
+    // pixels handed out in order.  Returns false if the workers all
+    // failed first.
+    public boolean render(Complex ul, Complex lr, int limit, int tile) throws InterruptedException {
+        return render(ul, lr, limit, tile, null);
+    }
+
+
+    // The same, but with costs to go by: tiles expected to take more
+    // than 1/SPLIT_SHARE of one worker's share of the frame are split
+    // into quarters, down to MIN_TILE, and the most expensive tiles
+    // are handed out first, so no worker is left with a long tile
+    // after the others have run out.
+    public boolean render(Complex ul, Complex lr, int limit, int tile, CostMap costs) throws InterruptedException {
+        List<TileProtocol.Job>  jobs = plan(ul, lr, limit, tile, costs);
+
+        pending.clear();
+        pending.addAll(jobs);
+        remaining.set(jobs.size());
+        alive.set(workers.size());
+
+        Thread  threads[] = new Thread [workers.size()];
+
+        for (int w = 0; w < threads.length; w++) {
+            final int   which = w;
+
+            tilesDone[w] = 0;
+            threads[w] = new Thread(() -> drive(which), "coordinator " + workers.get(w));
+            threads[w].start();
+        }
+
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        return remaining.get() == 0;
+    }
+
+
+    // The tiles of the view in the order they are to be handed out.
+    List<TileProtocol.Job> plan(Complex ul, Complex lr, int limit, int tile, CostMap costs) {
+        int                     width = target.getWidth();
+        int                     height = target.getHeight();
+        double                  hRe = (lr.real() - ul.real()) / width;
+        double                  vIm = (lr.imag() - ul.imag()) / height;
+        double                  split = (costs != null ? costs.total() / (workers.size() * SPLIT_SHARE) : 0.0);
+        List<TileProtocol.Job>  jobs = new ArrayList<>();
+
+        for (int ty = 0; ty < height; ty += tile) {
+            for (int tx = 0; tx < width; tx += tile) {
+                addTile(jobs, tx, ty, Math.min(tile, width - tx), Math.min(tile, height - ty), costs, split);
+            }
+        }
+
+        if (costs != null)
+        {
+            jobs.sort((a, b) -> Double.compare(b.cost, a.cost));
+        }
+
+        int     id = 0;
+
+        for (TileProtocol.Job j : jobs) {
+            j.id = id++;
+            j.re = ul.real() + j.x * hRe;
+            j.im = ul.imag() + j.y * vIm;
+            j.hRe = hRe;
+            j.vIm = vIm;
+            j.limit = limit;
+        }
+
+        return jobs;
+    }
+
+
+    void addTile(List<TileProtocol.Job> jobs, int x, int y, int w, int h, CostMap costs, double split) {
+        double  cost = (costs != null ? costs.cost(x, y, w, h) : 0.0);
+
+        if (costs != null && cost > split && w >= 2 * MIN_TILE && h >= 2 * MIN_TILE)
+        {
+            int     w2 = w / 2;
+            int     h2 = h / 2;
+
+            addTile(jobs, x, y, w2, h2, costs, split);
+            addTile(jobs, x + w2, y, w - w2, h2, costs, split);
+            addTile(jobs, x, y + h2, w2, h - h2, costs, split);
+            addTile(jobs, x + w2, y + h2, w - w2, h - h2, costs, split);
+            return;
+        }
+
+        TileProtocol.Job    j = new TileProtocol.Job();
+
+        j.x = x;
+        j.y = y;
+        j.width = w;
+        j.height = h;
+        j.cost = cost;
+        jobs.add(j);
+    }
+
+
+    // Feed one worker until every tile is done or it fails.
+    void drive(int which) {
+        InetSocketAddress               address = workers.get(which);
+        ArrayDeque<TileProtocol.Job>    inFlight = new ArrayDeque<>();
+        Inflater                        inflater = new Inflater();
+        int                             counts[] = new int [0];
+
+        try (Socket socket = new Socket()) {
+            socket.connect(address, TIMEOUT);
+            socket.setTcpNoDelay(true);
+
+            DataInputStream     in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream    out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            out.writeInt(TileProtocol.MAGIC);
+            out.writeInt(TileProtocol.VERSION);
+
+            while (remaining.get() > 0) {
+                TileProtocol.Job    j;
+
+                while (inFlight.size() < PIPELINE && (j = pending.poll()) != null) {
+                    TileProtocol.writeJob(out, j);
+                    inFlight.add(j);
+                }
+
+                out.flush();
+
+                if (inFlight.isEmpty())
+                {
+                    // The rest are in flight elsewhere, but may come
+                    // back if that worker dies
+                    Thread.sleep(10);
+                    continue;
+                }
+
+                j = inFlight.peek();
+                socket.setSoTimeout(timeoutFor(j));
+
+                if (counts.length < j.width * j.height)
+                {
+                    counts = new int [j.width * j.height];
+                }
+
+                if (in.readByte() != TileProtocol.RESULT
+                    || TileProtocol.readResult(in, counts, j.width * j.height, inflater) != j.id)
+                {
+                    throw new IOException("Worker " + address + " answered out of turn");
+                }
+
+                for (int y = 0; y < j.height; y++) {
+                    target.putRow(j.x, j.y + y, counts, y * j.width, j.width);
+                }
+
+                inFlight.poll();
+                tilesDone[which]++;
+                remaining.decrementAndGet();
+            }
+
+            out.writeByte(TileProtocol.QUIT);
+            out.flush();
+        }
+        catch (IOException e)
+        {
+            System.err.println("Worker " + address + " failed (" + e.getMessage() + "), "
+                               + inFlight.size() + " tiles handed to the others");
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            while (!inFlight.isEmpty()) {
+                pending.addFirst(inFlight.pollLast());
+            }
+
+            inflater.end();
+
+            if (alive.decrementAndGet() == 0 && remaining.get() > 0)
+            {
+                System.err.println("No workers left with " + remaining.get() + " tiles to go");
+            }
+        }
+    }
+
+
+    // Start a RenderWorker in a new JVM on this machine and return
+    // the port it listens on.
+    static int spawnWorker(List<Process> processes) throws IOException {
+        String      java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        Process     p = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                                           "mandel.RenderWorker")
+                            .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+
+        processes.add(p);
+
+        String      line = new BufferedReader(new InputStreamReader(p.getInputStream())).readLine();
+
+        if (line == null || !line.startsWith("Listening on port "))
+        {
+            throw new IOException("Worker did not start: " + line);
+        }
+
+        return Integer.parseInt(line.substring("Listening on port ".length()).trim());
+    }
+
+
+    public static void main(String args[]) throws IOException, InterruptedException {
+        int                     w = 768;
+        int                     h = 768;
+        int                     maxIter = 256;
+        int                     tile = DEFAULT_TILE;
+        Complex                 c1 = new Complex(-2.1, 2.1);
+        Complex                 c2 = new Complex(2.1, -2.1);
+        String                  outName = "mandel.png";
+        int                     spawn = 0;
+        boolean                 byCost = false;
+        int                     frames = 1;
+        double                  zoom = 2.0;
+        int                     timeout = 0;
+        List<InetSocketAddress> workers = new ArrayList<>();
+        List<Process>           processes = new ArrayList<>();
+
+        System.setProperty("java.awt.headless", "true");
+
+        for (int a = 0; a < args.length; a++) {
+            if (args[a].equals("-size")) {
+                w = Integer.parseInt(args[++a]);
+                h = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-limit")) {
+                maxIter = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-tile")) {
+                tile = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-view")) {
+                c1 = new Complex(Double.parseDouble(args[a + 1]), Double.parseDouble(args[a + 2]));
+                c2 = new Complex(Double.parseDouble(args[a + 3]), Double.parseDouble(args[a + 4]));
+                a += 4;
+            }
+            else if (args[a].equals("-workers")) {
+                for (String hp : args[++a].split(",")) {
+                    int     colon = hp.lastIndexOf(':');
+
+                    workers.add(new InetSocketAddress(hp.substring(0, colon), Integer.parseInt(hp.substring(colon + 1))));
+                }
+            }
+            else if (args[a].equals("-costs")) {
+                byCost = true;
+            }
+            else if (args[a].equals("-frames")) {
+                frames = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-zoom")) {
+                zoom = Double.parseDouble(args[++a]);
+            }
+            else if (args[a].equals("-timeout")) {
+                timeout = (int) Math.min(Integer.MAX_VALUE, 1000L * Integer.parseInt(args[++a]));
+            }
+            else if (args[a].equals("-spawn")) {
+                spawn = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-o")) {
+                outName = args[++a];
+            }
+            else {
+                System.err.println("Unknown option " + args[a]);
+                System.exit(1);
+            }
+        }
+
+        try
+        {
+            for (int i = 0; i < spawn; i++) {
+                workers.add(new InetSocketAddress("localhost", spawnWorker(processes)));
+            }
+
+            if (workers.isEmpty())
+            {
+                System.err.println("No workers: give -workers or -spawn");
+                System.exit(1);
+            }
+
+            Path    countPaths[] = { Files.createTempFile("mandel", ".counts"), Files.createTempFile("mandel", ".counts") };
+
+            try (CountFile previous = new CountFile(countPaths[0], w, h);
+                 CountFile current = new CountFile(countPaths[1], w, h)) {
+                CountFile   buffers[] = { previous, current };
+                Complex     prevUL = null;
+                Complex     prevLR = null;
+                double      allFrames = 0.0;
+
+                for (int f = 0; f < frames; f++) {
+                    CountFile           counts = buffers[f % 2];
+                    CountFile           before = buffers[(f + 1) % 2];
+                    double              scale = Math.pow(zoom, -f) / 2.0;
+                    double              midRe = (c1.real() + c2.real()) / 2.0;
+                    double              midIm = (c1.imag() + c2.imag()) / 2.0;
+                    Complex             ul = new Complex(midRe + (c1.real() - c2.real()) * scale,
+                                                         midIm + (c1.imag() - c2.imag()) * scale);
+                    Complex             lr = new Complex(midRe + (c2.real() - c1.real()) * scale,
+                                                         midIm + (c2.imag() - c1.imag()) * scale);
+                    RenderCoordinator   coordinator = new RenderCoordinator(workers, counts);
+                    long                start = System.nanoTime();
+                    CostMap             costs = null;
+
+                    if (byCost && prevUL != null)
+                    {
+                        costs = CostMap.fromFrame(before, prevUL, prevLR, ul, lr, w, h, maxIter, CostMap.DEFAULT_CELL);
+                    }
+                    else if (byCost)
+                    {
+                        costs = CostMap.probe(ul, lr, w, h, maxIter, CostMap.DEFAULT_CELL);
+                    }
+
+                    coordinator.setTimeout(timeout);
+
+                    boolean             done = coordinator.render(ul, lr, maxIter, tile, costs);
+                    double              elapsed = (System.nanoTime() - start) / 1.0e9;
+                    int                 tiles[] = coordinator.getTilesDone();
+                    int                 total = 0;
+
+                    for (int i = 0; i < tiles.length; i++) {
+                        System.out.println("  " + workers.get(i) + ": " + tiles[i] + " tiles");
+                        total += tiles[i];
+                    }
+
+                    System.out.printf("Rendered %s%dx%d on %d workers in %.2f s, %.1f tiles/s%n",
+                                      (frames > 1 ? "frame " + f + ", " : ""), w, h, workers.size(),
+                                      elapsed, total / elapsed);
+                    allFrames += elapsed;
+
+                    if (!done)
+                    {
+                        System.err.println("Not all tiles were rendered; nothing written");
+                        break;
+                    }
+
+                    TiledRender.writePng(counts, new FileOutputStream(frames > 1 ? String.format(outName, f) : outName),
+                                         new Palette(maxIter));
+                    prevUL = ul;
+                    prevLR = lr;
+                }
+
+                if (frames > 1)
+                {
+                    System.out.printf("%d frames in %.2f s%n", frames, allFrames);
+                }
+            }
+            finally
+            {
+                Files.delete(countPaths[0]);
+                Files.delete(countPaths[1]);
+            }
+        }
+        finally
+        {
+            for (Process p : processes) {
+                p.destroy();
+            }
+        }
+    }
+}
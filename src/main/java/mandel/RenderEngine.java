@@ -0,0 +1,21 @@
+// What a front end or a benchmark needs from a renderer, whichever
+// way it fills in the count buffer.  MandelRenderer (rectangle
+// subdivision), ParallelRenderer and BoundaryTracer all implement
+// it, so the same viewport can be handed to each in turn.
+
+package mandel;
+
+import java.awt.image.BufferedImage;
+
+public interface RenderEngine {
+    void setLimit(int limit);
+    void initialize(Complex ul, Complex lr);
+    void initialize(Complex ul, double h, double v, int x, int y);
+    void clear();
+    void drawPicture();
+    boolean isComplete();
+    int count(int x, int y);
+    int getWidth();
+    int getHeight();
+    BufferedImage toImage();
+}
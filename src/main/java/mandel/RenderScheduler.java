@@ -0,0 +1,71 @@
+// Run renders on a background thread, newest request wins.
+//
+// Every request gets the next generation number.  The renderer
+// compares its own generation against the latest one at each strip
+// and sub image, so once a newer zoom or pan has been asked for, the
+// render in progress unwinds almost at once and the new one starts.
+//
+// Requests are still run one after another and in order: a
+// superseded request does its setup (moving the view) but its
+// render returns straight away.  That keeps the view where the
+// user put it no matter how quickly they click.
+
+package mandel;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class RenderScheduler {
+
+    MandelRenderer      renderer;
+    ExecutorService     executor;
+    AtomicLong          latest;
+
+
+    public RenderScheduler(MandelRenderer r) {
+        renderer = r;
+        latest = new AtomicLong(0);
+        renderer.setGenerations(latest);
+
+        // One thread, so requests never touch the renderer at the
+        // same time.  ParallelRenderer fans out from there.
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread  t = new Thread(runnable, "mandel-render");
+
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+
+    // Queue up work against the renderer, cancelling whatever is
+    // running now.  finished is run on the render thread if the work
+    // was not itself cancelled by a later request.
+    public long submit(Runnable work, Runnable finished) {
+        long    g = latest.incrementAndGet();
+
+        executor.execute(() -> {
+            renderer.startGeneration(g);
+            work.run();
+
+            if (!renderer.cancelled() && finished != null)
+            {
+                finished.run();
+            }
+        });
+
+        return g;
+    }
+
+
+    public long getGeneration() { return latest.get(); }
+
+
+    public void shutdown() throws InterruptedException
+    {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,113 @@
+// Counters for how much work a render did and where the time went.
+//
+// Every counter is a LongAdder, which stripes its cells over the
+// threads that update it, so the fork/join engine does not fight
+// over one cache line.  A renderer without a RenderStats does no
+// counting at all.  The kernels only report once per pixel, after
+// the iteration loop, so the loop itself is the same either way.
+//
+// Times are summed over all render threads, so with the fork/join
+// engine they can add up to more than the wall clock time.
+
+package mandel;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class RenderStats implements RenderStatsMBean {
+
+    public static final String  DEFAULT_NAME = "mandel:type=RenderStats";
+
+    LongAdder   renders;
+    LongAdder   pixelsEvaluated;
+    LongAdder   pixelsFilled;
+    LongAdder   pixelsMirrored;
+    LongAdder   pixelsEstimated;
+    LongAdder   pixelsCached;
+    LongAdder   iterations;
+    LongAdder   splits;
+    LongAdder   boundaryNanos;
+    LongAdder   fillNanos;
+    LongAdder   paintNanos;
+
+
+    public RenderStats() {
+        renders = new LongAdder();
+        pixelsEvaluated = new LongAdder();
+        pixelsFilled = new LongAdder();
+        pixelsMirrored = new LongAdder();
+        pixelsEstimated = new LongAdder();
+        pixelsCached = new LongAdder();
+        iterations = new LongAdder();
+        splits = new LongAdder();
+        boundaryNanos = new LongAdder();
+        fillNanos = new LongAdder();
+        paintNanos = new LongAdder();
+    }
+
+
+    // Make the counters visible to JMX under the given name, e.g.
+    // DEFAULT_NAME.
+    public void register(String name) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        server.registerMBean(this, new ObjectName(name));
+    }
+
+
+    public long getRenders() { return renders.sum(); }
+    public long getPixelsEvaluated() { return pixelsEvaluated.sum(); }
+    public long getPixelsFilled() { return pixelsFilled.sum(); }
+    public long getPixelsMirrored() { return pixelsMirrored.sum(); }
+    public long getPixelsEstimated() { return pixelsEstimated.sum(); }
+    public long getPixelsCached() { return pixelsCached.sum(); }
+    public long getIterations() { return iterations.sum(); }
+    public long getSplits() { return splits.sum(); }
+    public long getBoundaryMillis() { return boundaryNanos.sum() / 1000000; }
+    public long getFillMillis() { return fillNanos.sum() / 1000000; }
+    public long getPaintMillis() { return paintNanos.sum() / 1000000; }
+
+
+    // The share of pixels that subdivision or distance estimates
+    // filled in, symmetry copied or the tile cache supplied, without
+    // running the kernel.
+    public double getFilledFraction() {
+        long    filled = pixelsFilled.sum() + pixelsMirrored.sum() + pixelsEstimated.sum() + pixelsCached.sum();
+        long    total = filled + pixelsEvaluated.sum();
+
+        return (total == 0 ? 0.0 : (double) filled / total);
+    }
+
+
+    public void reset() {
+        renders.reset();
+        pixelsEvaluated.reset();
+        pixelsFilled.reset();
+        pixelsMirrored.reset();
+        pixelsEstimated.reset();
+        pixelsCached.reset();
+        iterations.reset();
+        splits.reset();
+        boundaryNanos.reset();
+        fillNanos.reset();
+        paintNanos.reset();
+    }
+
+
+    public String summary() {
+        return String.format("%d evaluated, %d filled, %d mirrored, %d in disks, %d cached (%.1f%% free), %d iterations, "
+                             + "%d splits, boundary %d ms, fill %d ms, paint %d ms",
+                             getPixelsEvaluated(), getPixelsFilled(), getPixelsMirrored(), getPixelsEstimated(),
+                             getPixelsCached(), 100.0 * getFilledFraction(),
+                             getIterations(), getSplits(),
+                             getBoundaryMillis(), getFillMillis(), getPaintMillis());
+    }
+
+
+    public String toString() {
+        return summary();
+    }
+}
@@ -0,0 +1,20 @@
+// Management interface for RenderStats, so the counters can be
+// watched from jconsole or any other JMX client.
+
+package mandel;
+
+public interface RenderStatsMBean {
+    long getRenders();
+    long getPixelsEvaluated();
+    long getPixelsFilled();
+    long getPixelsMirrored();
+    long getPixelsEstimated();
+    long getPixelsCached();
+    long getIterations();
+    long getSplits();
+    long getBoundaryMillis();
+    long getFillMillis();
+    long getPaintMillis();
+    double getFilledFraction();
+    void reset();
+}
@@ -0,0 +1,139 @@
+// Render tiles for a RenderCoordinator on another machine, or in
+// another process on this one.
+//
+//      java mandel.RenderWorker [-port n]
+//
+// The worker listens on the port (any free one if it is 0, which is
+// the default) and prints it, so a coordinator that started it can
+// read it.  Each connection gets a thread and a renderer of its own
+// and is served one job at a time, in the order the jobs came in;
+// see TileProtocol.
+
+package mandel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.zip.Deflater;
+
+public class RenderWorker {
+
+    ServerSocket    server;
+
+
+    public RenderWorker(int port) throws IOException {
+        server = new ServerSocket(port);
+    }
+
+
+    public int getPort() { return server.getLocalPort(); }
+
+
+    // Serve connections until the server socket is closed.
+    public void run() {
+        while (!server.isClosed()) {
+            try
+            {
+                Socket  s = server.accept();
+                Thread  t = new Thread(() -> serve(s), "worker " + s.getRemoteSocketAddress());
+
+                t.setDaemon(true);
+                t.start();
+            }
+            catch (IOException e)
+            {
+                // Closed, or one bad connection; carry on if still open
+            }
+        }
+    }
+
+
+    public void close() throws IOException {
+        server.close();
+    }
+
+
+    void serve(Socket s) {
+        MandelRenderer  renderer = null;
+        Deflater        deflater = new Deflater(Deflater.BEST_SPEED);
+        int             counts[] = new int [0];
+
+        try (Socket socket = s;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            socket.setTcpNoDelay(true);
+
+            if (in.readInt() != TileProtocol.MAGIC || in.readInt() != TileProtocol.VERSION)
+            {
+                return;
+            }
+
+            for (;;) {
+                byte    type = in.readByte();
+
+                if (type != TileProtocol.JOB)
+                {
+                    return;
+                }
+
+                TileProtocol.Job    j = TileProtocol.readJob(in);
+                int                 n = j.width * j.height;
+
+                if (renderer == null || renderer.getWidth() != j.width || renderer.getHeight() != j.height)
+                {
+                    renderer = new MandelRenderer(j.width, j.height);
+                    counts = new int [n];
+                }
+
+                renderer.setLimit(j.limit);
+                renderer.initialize(new Complex(j.re, j.im),
+                                    new Complex(j.re + j.width * j.hRe, j.im + j.height * j.vIm));
+                renderer.drawPicture();
+
+                for (int y = 0; y < j.height; y++) {
+                    for (int x = 0; x < j.width; x++) {
+                        counts[y * j.width + x] = renderer.count(x, y);
+                    }
+                }
+
+                TileProtocol.writeResult(out, j.id, counts, n, deflater);
+                out.flush();
+            }
+        }
+        catch (IOException e)
+        {
+            // The coordinator went away
+        }
+        finally
+        {
+            deflater.end();
+        }
+    }
+
+
+    public static void main(String args[]) throws IOException {
+        int     port = 0;
+
+        System.setProperty("java.awt.headless", "true");
+
+        for (int a = 0; a < args.length; a++) {
+            if (args[a].equals("-port")) {
+                port = Integer.parseInt(args[++a]);
+            }
+            else {
+                System.err.println("Unknown option " + args[a]);
+                System.exit(1);
+            }
+        }
+
+        RenderWorker    worker = new RenderWorker(port);
+
+        System.out.println("Listening on port " + worker.getPort());
+        System.out.flush();
+        worker.run();
+    }
+}
@@ -0,0 +1,423 @@
+// Escape counts for fixed size tiles of the plane, kept so that a
+// view that has been rendered before does not have to be worked out
+// again.
+//
+// Tiles lie on a power-of-two lattice: at zoom level z the plane is
+// cut into squares WORLD_SIZE / 2^z across, counted from the corner
+// (WORLD_LEFT, WORLD_TOP), and each square is TILE_SIZE pixels wide.
+// A view only lines up with the lattice if its pixel spacing is a
+// power of two and its corner falls on a lattice pixel; zooming in
+// by a power of two and panning by whole pixels keep it lined up.
+// A tile is known by its zoom level, its position, the iteration
+// limit, the kernel precision and the variant it was rendered with:
+// the engine and the shortcuts that can change a count (see
+// MandelRenderer.cacheVariant).
+//
+// A tile the views so far have only partly covered is kept with
+// UNKNOWN in the pixels not seen yet.
+//
+// Recently used tiles are kept in memory.  Every tile is also
+// written, deflated, to a directory, which is trimmed back to a
+// given size by deleting the files used longest ago, so the tiles
+// outlive the program.  Only the bookkeeping is done under the lock;
+// reading, writing and compressing files is done outside it, so
+// render threads do not wait on each other's disk work.
+
+package mandel;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+public class TileCache {
+
+    public static final int     TILE_SIZE = 256;
+    public static final double  WORLD_LEFT = -2.0;
+    public static final double  WORLD_TOP = 2.0;
+    public static final double  WORLD_SIZE = 4.0;
+
+    static final String         SUFFIX = ".tile";
+
+
+    // Which tile, and what it was rendered with.
+    public static final class Key {
+        final int   zoom;
+        final long  x;
+        final long  y;
+        final int   limit;
+        final int   precision;
+        final int   variant;
+
+        public Key(int z, long tx, long ty, int l, int p, int v) {
+            zoom = z;
+            x = tx;
+            y = ty;
+            limit = l;
+            precision = p;
+            variant = v;
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+
+            Key     k = (Key) o;
+
+            return zoom == k.zoom && x == k.x && y == k.y && limit == k.limit && precision == k.precision
+                   && variant == k.variant;
+        }
+
+        public int hashCode() {
+            return ((int) (((zoom * 31 + x) * 31 + y) * 31 + limit) * 31 + precision) * 31 + variant;
+        }
+
+        String fileName() {
+            return zoom + "_" + x + "_" + y + "_" + limit + "_" + precision + "_" + variant + SUFFIX;
+        }
+
+        // The key a file name stands for, or null if it is not one
+        // of ours.
+        static Key parse(String name) {
+            String  f[] = name.substring(0, name.length() - SUFFIX.length()).split("_");
+
+            if (f.length != 6)
+            {
+                return null;
+            }
+
+            try
+            {
+                return new Key(Integer.parseInt(f[0]), Long.parseLong(f[1]), Long.parseLong(f[2]),
+                               Integer.parseInt(f[3]), Integer.parseInt(f[4]), Integer.parseInt(f[5]));
+            }
+            catch (NumberFormatException e)
+            {
+                return null;
+            }
+        }
+
+        public String toString() {
+            return fileName();
+        }
+    }
+
+
+    int                         memoryTiles;
+    LinkedHashMap<Key, int[]>   memory;         // in order of use, eldest first
+    Path                        dir;
+    long                        diskLimit;
+    long                        diskBytes;
+    LinkedHashMap<Key, Long>    disk;           // file sizes, eldest first
+    AtomicLong                  memoryHits;
+    AtomicLong                  diskHits;
+    AtomicLong                  misses;
+
+
+    // Keep up to memoryTiles tiles in memory and up to diskLimit
+    // bytes of them in directory d, which is created if need be.
+    // Tiles already in d are picked up, oldest first.  With a null
+    // directory the tiles are only kept in memory.
+    public TileCache(int memoryTiles, Path d, long diskLimit) throws IOException {
+        this.memoryTiles = memoryTiles;
+        this.diskLimit = diskLimit;
+        memory = new LinkedHashMap<>(16, 0.75f, true);
+        dir = d;
+        diskBytes = 0;
+        disk = new LinkedHashMap<>(16, 0.75f, true);
+        memoryHits = new AtomicLong();
+        diskHits = new AtomicLong();
+        misses = new AtomicLong();
+
+        if (dir != null)
+        {
+            Files.createDirectories(dir);
+
+            List<Path>  files = new ArrayList<>();
+
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+                for (Path p : ds) {
+                    files.add(p);
+                }
+            }
+
+            files.sort((a, b) -> lastUsed(a).compareTo(lastUsed(b)));
+
+            for (Path p : files) {
+                Key     k = Key.parse(p.getFileName().toString());
+
+                if (k != null)
+                {
+                    long    size = Files.size(p);
+
+                    disk.put(k, size);
+                    diskBytes += size;
+                }
+            }
+
+            delete(trimDisk());
+        }
+    }
+
+
+    public long getMemoryHits() { return memoryHits.get(); }
+    public long getDiskHits() { return diskHits.get(); }
+    public long getMisses() { return misses.get(); }
+    public synchronized long getDiskBytes() { return diskBytes; }
+
+
+    // The zoom level whose lattice has pixels spacing apart, or
+    // Integer.MIN_VALUE if spacing is not a power of two.
+    public static int zoomFor(double spacing) {
+        if (!(spacing > 0.0) || spacing != Math.scalb(1.0, Math.getExponent(spacing)))
+        {
+            return Integer.MIN_VALUE;
+        }
+
+        return Math.getExponent(WORLD_SIZE / TILE_SIZE) - Math.getExponent(spacing);
+    }
+
+
+    // The lattice pixel at offset (hi + lo) from the world corner,
+    // counted in steps of spacing, or null if it is not a whole
+    // number of steps or does not fit in a long.
+    static Long latticePixel(double hi, double lo, double corner, double spacing) {
+        BigDecimal  steps = new BigDecimal(hi).add(new BigDecimal(lo)).subtract(new BigDecimal(corner))
+                                              .multiply(new BigDecimal(1.0 / spacing));
+
+        try
+        {
+            return steps.longValueExact();
+        }
+        catch (ArithmeticException e)
+        {
+            return null;
+        }
+    }
+
+
+    // True if every pixel of tile t has been rendered.
+    public static boolean isWhole(int t[]) {
+        for (int c : t) {
+            if (c == MandelRenderer.UNKNOWN)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    // The counts of tile k, or null if it is not cached.  The array
+    // is shared, so it must not be changed.
+    public int[] get(Key k) {
+        int     t[];
+
+        synchronized (this) {
+            t = memory.get(k);
+
+            if (t != null)
+            {
+                memoryHits.incrementAndGet();
+                return t;
+            }
+
+            if (dir == null || disk.get(k) == null)
+            {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+
+        Path    p = dir.resolve(k.fileName());
+
+        try
+        {
+            t = read(p);
+            Files.setLastModifiedTime(p, FileTime.fromMillis(System.currentTimeMillis()));
+        }
+        catch (IOException e)
+        {
+            // Trimmed or replaced while it was being read
+            synchronized (this) {
+                forget(k);
+            }
+
+            misses.incrementAndGet();
+            return null;
+        }
+
+        synchronized (this) {
+            remember(k, t);
+        }
+
+        diskHits.incrementAndGet();
+        return t;
+    }
+
+
+    // Keep the TILE_SIZE x TILE_SIZE counts of tile k, replacing
+    // any there were.  Pixels that have not been rendered yet are
+    // UNKNOWN.  The cache keeps the array itself, so it must not be
+    // changed afterwards.
+    public void put(Key k, int counts[]) {
+        synchronized (this) {
+            remember(k, counts);
+        }
+
+        if (dir == null)
+        {
+            return;
+        }
+
+        Path        p = dir.resolve(k.fileName());
+        List<Key>   trimmed;
+
+        try
+        {
+            write(p, counts);
+
+            long    size = Files.size(p);
+
+            synchronized (this) {
+                forget(k);
+                disk.put(k, size);
+                diskBytes += size;
+                trimmed = trimDisk();
+            }
+        }
+        catch (IOException e)
+        {
+            // Still in memory; just not kept on disk
+            return;
+        }
+
+        delete(trimmed);
+    }
+
+
+    // Called with the lock held.
+    void remember(Key k, int counts[]) {
+        memory.put(k, counts);
+
+        Iterator<Map.Entry<Key, int[]>> i = memory.entrySet().iterator();
+
+        while (memory.size() > memoryTiles && i.hasNext()) {
+            i.next();
+            i.remove();
+        }
+    }
+
+
+    // Drop the tiles used longest ago from the books until the disk
+    // is back under its limit, and return them for delete() to
+    // remove once the lock is let go.  Called with the lock held.
+    List<Key> trimDisk() {
+        Iterator<Map.Entry<Key, Long>>  i = disk.entrySet().iterator();
+        List<Key>                       trimmed = new ArrayList<>();
+
+        while (diskBytes > diskLimit && i.hasNext()) {
+            Map.Entry<Key, Long>    e = i.next();
+
+            trimmed.add(e.getKey());
+            diskBytes -= e.getValue();
+            i.remove();
+        }
+
+        return trimmed;
+    }
+
+
+    // Remove the files of trimmed tiles.  A tile put again in the
+    // meantime may lose its new file too; get() then finds it gone
+    // and forgets it.
+    void delete(List<Key> trimmed) {
+        for (Key k : trimmed) {
+            try
+            {
+                Files.deleteIfExists(dir.resolve(k.fileName()));
+            }
+            catch (IOException x)
+            {
+                // Counted as gone; it will be overwritten if needed
+            }
+        }
+    }
+
+
+    // Called with the lock held.
+    void forget(Key k) {
+        Long    size = disk.remove(k);
+
+        if (size != null)
+        {
+            diskBytes -= size;
+        }
+    }
+
+
+    static FileTime lastUsed(Path p) {
+        try
+        {
+            return Files.getLastModifiedTime(p);
+        }
+        catch (IOException e)
+        {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+
+    static void write(Path p, int counts[]) throws IOException {
+        // Unique, since two threads may be putting the same tile
+        Path    temp = Files.createTempFile(p.getParent(), p.getFileName().toString(), ".part");
+
+        try
+        {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                                            new DeflaterOutputStream(Files.newOutputStream(temp))))) {
+                for (int c : counts) {
+                    out.writeInt(c);
+                }
+            }
+
+            Files.move(temp, p, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally
+        {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+
+    static int[] read(Path p) throws IOException {
+        int     counts[] = new int [TILE_SIZE * TILE_SIZE];
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                                      new InflaterInputStream(Files.newInputStream(p))))) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = in.readInt();
+            }
+        }
+
+        return counts;
+    }
+}
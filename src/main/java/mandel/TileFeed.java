@@ -0,0 +1,201 @@
+// Carry finished sub images from the render threads to the screen.
+//
+// Render threads push each completed sub image onto a lock-free
+// queue and ask for a repaint only if one is not already pending,
+// so a burst of small tiles turns into a single repaint.  The paint
+// side drains the queue, colors the tiles straight into the int
+// raster of one shared BufferedImage, and blits that image with a
+// single drawImage.  A preview of the whole picture, from a
+// progressive render, is colored in before any tiles that came after
+// it.
+//
+// Zoom and pan swap the renderer's count buffer for another one, and
+// the one before is reused by the zoom after that, so the paint side
+// never reads the renderer's current buffer.  Each tile goes with the
+// buffer and generation it was rendered in, tiles of a generation
+// that has been overtaken are dropped, and refresh() colors the
+// buffer of the last render that finished.  Previews are copied.
+
+package mandel;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TileFeed implements MandelRenderer.Listener {
+
+    // Milliseconds the repaint may be held back to gather tiles
+    static final long   REPAINT_DELAY = 15;
+
+    // A finished sub image and where its counts are.
+    static final class Tile {
+        final MandelRenderer.SubImage   sub;
+        final int                       counts[];
+        final long                      generation;
+
+        Tile(MandelRenderer.SubImage s, int c[], long g) {
+            sub = s;
+            counts = c;
+            generation = g;
+        }
+    }
+
+
+    MandelRenderer                  renderer;
+    Component                       target;
+    ConcurrentLinkedQueue<Tile>     tiles;
+    AtomicBoolean                   repaintPending;
+    BufferedImage                   image;
+    int                             pixels[];
+    volatile int                    preview[];
+    volatile long                   generation;     // newest tile's
+    volatile int                    finished[];     // counts of the last finished render
+    boolean                         inset;
+
+
+    public TileFeed(MandelRenderer r, Component c) {
+        renderer = r;
+        target = c;
+        tiles = new ConcurrentLinkedQueue<Tile>();
+        repaintPending = new AtomicBoolean(false);
+        image = new BufferedImage(r.getWidth(), r.getHeight(), BufferedImage.TYPE_INT_RGB);
+        pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        preview = null;
+        generation = 0;
+        finished = r.counts;
+        inset = false;
+    }
+
+
+    // Leave the top row and left column of each tile alone while a
+    // render is coming in, so the subdivision shows as a grid.
+    public void setInset(boolean on)
+    {
+        inset = on;
+    }
+
+    public BufferedImage getImage() { return image; }
+
+
+    // A copy of the picture on screen, with every tile that has come
+    // in colored.  Called on the event thread, which is the only one
+    // that draws into the image.
+    public BufferedImage snapshot() {
+        BufferedImage   copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+
+        drain();
+        copy.setData(image.getRaster());
+
+        return copy;
+    }
+
+
+    // Called on the render threads, which are the only ones that
+    // swap the count buffer.
+    public void subImageCompleted(MandelRenderer.SubImage s) {
+        long    g = renderer.generation;
+
+        generation = g;
+        tiles.offer(new Tile(s, renderer.counts, g));
+
+        if (repaintPending.compareAndSet(false, true))
+        {
+            target.repaint(REPAINT_DELAY);
+        }
+    }
+
+
+    // Called on the render thread.  The array is the renderer's and
+    // the next pass writes to it while this one is being colored, so
+    // the feed keeps a copy.
+    public void previewCompleted(int counts[], int step) {
+        preview = counts.clone();
+
+        if (repaintPending.compareAndSet(false, true))
+        {
+            target.repaint(REPAINT_DELAY);
+        }
+    }
+
+
+    // Called on the render thread when a render gets to the end.
+    // refresh() colors its counts from now on.
+    public void renderFinished()
+    {
+        finished = renderer.counts;
+    }
+
+
+    // Color the latest preview, if there is one, and then every tile
+    // that has come in since the last call.
+    public void drain() {
+        Tile                    t;
+        Palette                 palette = renderer.getPalette();
+        int                     width = renderer.getWidth();
+        int                     offset = (inset ? 1 : 0);
+        long                    start = renderer.startClock();
+        int                     whole[] = preview;
+
+        repaintPending.set(false);
+
+        if (whole != null)
+        {
+            preview = null;
+            palette.recolor(whole, pixels);
+        }
+
+        while ((t = tiles.poll()) != null) {
+            MandelRenderer.SubImage s = t.sub;
+
+            if (t.generation != generation)
+            {
+                // Its buffer may be in use by a newer render
+                continue;
+            }
+
+            for (int j = s.getY() + offset; j < s.getY() + s.getHeight(); j++) {
+                int     row = j * width;
+
+                for (int i = s.getX() + offset; i < s.getX() + s.getWidth(); i++) {
+                    pixels[row + i] = palette.color(t.counts[row + i]);
+                }
+            }
+        }
+
+        renderer.paintDone(start);
+    }
+
+
+    // Forget queued tiles, e.g. when the view is about to change.
+    public void discard()
+    {
+        preview = null;
+        tiles.clear();
+    }
+
+
+    // Recolor the whole image from the counts of the last render
+    // that finished.
+    public void refresh() {
+        long    start = renderer.startClock();
+
+        discard();
+        renderer.getPalette().recolor(finished, pixels);
+        renderer.paintDone(start);
+    }
+
+
+    public Graphics2D createGraphics() {
+        return image.createGraphics();
+    }
+
+
+    public void paint(Graphics g) {
+        drain();
+        g.drawImage(image, 0, 0, null);
+    }
+}
@@ -0,0 +1,232 @@
+// Load test for TileServer: a number of clients ask for tiles as
+// fast as they can for a while, and the latency of the answers and
+// the tiles served per second are reported.
+//
+// Each client starts from one of the zoom 2 tiles over the set and
+// zooms down to the deepest zoom, picking one of the four tiles
+// under the current one at random, and then starts again from the
+// top, as someone zooming around a map would.
+// Clients are paired up on the same random seed, so some requests
+// are for a tile another client is asking for at the same time.
+//
+//      java mandel.TileLoadTest [-url http://localhost:8080] [-clients n]
+//                               [-seconds n] [-zoom n] [-limit n]
+//
+// With no -url a server is started in this JVM on a free port.
+
+package mandel;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+import java.util.Random;
+
+public class TileLoadTest {
+
+    // One simulated user, asking for one tile at a time.
+    class Client extends Thread {
+        Random      random;
+        long        end;
+        long        latencies[];
+        int         done;
+        int         busy;
+        int         failed;
+
+        Client(long seed, long e) {
+            random = new Random(seed);
+            end = e;
+            latencies = new long [1024];
+            done = 0;
+            busy = 0;
+            failed = 0;
+        }
+
+        public void run() {
+            int     zoom = 2;
+            long    x = random.nextInt(3);
+            long    y = 1 + random.nextInt(2);
+
+            while (System.nanoTime() < end) {
+                long    start = System.nanoTime();
+                int     status = fetch(zoom, x, y);
+                long    elapsed = System.nanoTime() - start;
+
+                if (status == 200)
+                {
+                    if (done == latencies.length)
+                    {
+                        latencies = Arrays.copyOf(latencies, 2 * done);
+                    }
+
+                    latencies[done++] = elapsed;
+                }
+                else if (status == 503)
+                {
+                    busy++;
+                }
+                else
+                {
+                    failed++;
+                }
+
+                if (zoom < maxZoom)
+                {
+                    zoom++;
+                    x = 2 * x + random.nextInt(2);
+                    y = 2 * y + random.nextInt(2);
+                }
+                else
+                {
+                    zoom = 2;
+                    x = random.nextInt(3);
+                    y = 1 + random.nextInt(2);
+                }
+            }
+        }
+    }
+
+
+    String          base;
+    int             clients;
+    long            seconds;
+    int             maxZoom;
+    int             limit;
+    HttpClient      http;
+
+
+    public TileLoadTest(String url, int clients, long seconds, int zoom, int limit) {
+        base = url;
+        this.clients = clients;
+        this.seconds = seconds;
+        maxZoom = zoom;
+        this.limit = limit;
+        http = HttpClient.newHttpClient();
+    }
+
+
+    // The status of one tile request, or -1 if it did not get an
+    // answer at all.
+    int fetch(int zoom, long x, long y) {
+        HttpRequest     request = HttpRequest.newBuilder(URI.create(base + "/" + zoom + "/" + x + "/" + y
+                                                                    + ".png?limit=" + limit)).build();
+
+        try
+        {
+            return http.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+        }
+        catch (IOException e)
+        {
+            return -1;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+
+
+    // Run every client until the time is up and print the results.
+    public void run() throws InterruptedException {
+        long        start = System.nanoTime();
+        Client      all[] = new Client [clients];
+
+        for (int c = 0; c < clients; c++) {
+            all[c] = new Client(c / 2, start + seconds * 1000000000L);
+            all[c].start();
+        }
+
+        int         done = 0;
+        int         busy = 0;
+        int         failed = 0;
+
+        for (Client c : all) {
+            c.join();
+            done += c.done;
+            busy += c.busy;
+            failed += c.failed;
+        }
+
+        double      elapsed = (System.nanoTime() - start) / 1.0e9;
+        long        latencies[] = new long [done];
+        int         n = 0;
+
+        for (Client c : all) {
+            System.arraycopy(c.latencies, 0, latencies, n, c.done);
+            n += c.done;
+        }
+
+        Arrays.sort(latencies);
+
+        System.out.printf("%d clients, %.1f s: %d tiles (%.1f tiles/s), %d busy, %d failed%n",
+                          clients, elapsed, done, done / elapsed, busy, failed);
+
+        if (done > 0)
+        {
+            System.out.printf("latency p50 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                              percentile(latencies, 0.50) / 1.0e6, percentile(latencies, 0.99) / 1.0e6,
+                              latencies[done - 1] / 1.0e6);
+        }
+    }
+
+
+    static long percentile(long sorted[], double p) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+
+    public static void main(String args[]) throws IOException, InterruptedException {
+        String      url = null;
+        int         clients = 16;
+        long        seconds = 10;
+        int         zoom = 10;
+        int         limit = TileServer.DEFAULT_LIMIT;
+
+        System.setProperty("java.awt.headless", "true");
+
+        for (int a = 0; a < args.length; a++) {
+            if (args[a].equals("-url")) {
+                url = args[++a];
+            }
+            else if (args[a].equals("-clients")) {
+                clients = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-seconds")) {
+                seconds = Long.parseLong(args[++a]);
+            }
+            else if (args[a].equals("-zoom")) {
+                zoom = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-limit")) {
+                limit = Integer.parseInt(args[++a]);
+            }
+            else {
+                System.err.println("Unknown option " + args[a]);
+                System.exit(1);
+            }
+        }
+
+        TileServer  server = null;
+
+        if (url == null)
+        {
+            server = new TileServer(0, Runtime.getRuntime().availableProcessors(), 64,
+                                    new TileCache(MandelRenderer.CACHE_TILES, null, MandelRenderer.CACHE_BYTES),
+                                    limit);
+            server.start();
+            url = "http://localhost:" + server.getPort();
+        }
+
+        new TileLoadTest(url, clients, seconds, zoom, limit).run();
+
+        if (server != null)
+        {
+            System.out.println(server.getCoalesced() + " requests waited for a render already running");
+            System.out.println(server.getStats().summary());
+            server.stop();
+        }
+    }
+}
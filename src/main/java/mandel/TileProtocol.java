@@ -0,0 +1,152 @@
+// The messages RenderCoordinator and RenderWorker exchange over a
+// socket, all big-endian as DataOutputStream writes them.
+//
+// The coordinator opens with MAGIC and VERSION, then sends jobs:
+//
+//      JOB     int id, double re, double im, double hRe, double vIm,
+//              int limit, int width, int height
+//
+// (re, im) is the upper left corner of the tile and hRe and vIm the
+// distance from one pixel to the next across and down.  The worker
+// answers each job in turn with
+//
+//      RESULT  int id, int length, length bytes
+//
+// where the bytes are the tile's width * height counts, row by row,
+// deflated.  QUIT ends the connection.
+
+package mandel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+final class TileProtocol {
+
+    static final int    MAGIC = 0x4d4e444c;     // "MNDL"
+    static final int    VERSION = 1;
+
+    static final byte   JOB = 1;
+    static final byte   RESULT = 2;
+    static final byte   QUIT = 3;
+
+
+    // One tile to render.  x, y and cost only matter to the
+    // coordinator: where the tile goes in the whole picture and how
+    // long it is expected to take.
+    static final class Job {
+        int         id;
+        int         x;
+        int         y;
+        int         width;
+        int         height;
+        double      re;
+        double      im;
+        double      hRe;
+        double      vIm;
+        int         limit;
+        double      cost;
+    }
+
+
+    private TileProtocol() {
+    }
+
+
+    static void writeJob(DataOutputStream out, Job j) throws IOException {
+        out.writeByte(JOB);
+        out.writeInt(j.id);
+        out.writeDouble(j.re);
+        out.writeDouble(j.im);
+        out.writeDouble(j.hRe);
+        out.writeDouble(j.vIm);
+        out.writeInt(j.limit);
+        out.writeInt(j.width);
+        out.writeInt(j.height);
+    }
+
+
+    // Everything after the JOB byte.
+    static Job readJob(DataInputStream in) throws IOException {
+        Job     j = new Job();
+
+        j.id = in.readInt();
+        j.re = in.readDouble();
+        j.im = in.readDouble();
+        j.hRe = in.readDouble();
+        j.vIm = in.readDouble();
+        j.limit = in.readInt();
+        j.width = in.readInt();
+        j.height = in.readInt();
+        return j;
+    }
+
+
+    static void writeResult(DataOutputStream out, int id, int counts[], int n, Deflater deflater) throws IOException {
+        byte                    raw[] = new byte [4 * n];
+        ByteArrayOutputStream   packed = new ByteArrayOutputStream(n / 4 + 64);
+        byte                    buf[] = new byte [8192];
+
+        for (int i = 0; i < n; i++) {
+            raw[4 * i] = (byte) (counts[i] >> 24);
+            raw[4 * i + 1] = (byte) (counts[i] >> 16);
+            raw[4 * i + 2] = (byte) (counts[i] >> 8);
+            raw[4 * i + 3] = (byte) counts[i];
+        }
+
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+
+        while (!deflater.finished()) {
+            packed.write(buf, 0, deflater.deflate(buf));
+        }
+
+        out.writeByte(RESULT);
+        out.writeInt(id);
+        out.writeInt(packed.size());
+        packed.writeTo(out);
+    }
+
+
+    // Everything after the RESULT byte.  Fills in the first n counts
+    // and returns the job id.
+    static int readResult(DataInputStream in, int counts[], int n, Inflater inflater) throws IOException {
+        int     id = in.readInt();
+        byte    packed[] = new byte [in.readInt()];
+        byte    raw[] = new byte [4 * n];
+
+        in.readFully(packed);
+        inflater.reset();
+        inflater.setInput(packed);
+
+        try
+        {
+            int     got = 0;
+
+            while (got < raw.length && !inflater.finished()) {
+                got += inflater.inflate(raw, got, raw.length - got);
+            }
+
+            if (got != raw.length)
+            {
+                throw new IOException("Tile " + id + " is short: " + got + " of " + raw.length + " bytes");
+            }
+        }
+        catch (DataFormatException e)
+        {
+            throw new IOException("Tile " + id + " is corrupt", e);
+        }
+
+        for (int i = 0; i < n; i++) {
+            counts[i] = (raw[4 * i] << 24) | ((raw[4 * i + 1] & 0xFF) << 16)
+                        | ((raw[4 * i + 2] & 0xFF) << 8) | (raw[4 * i + 3] & 0xFF);
+        }
+
+        return id;
+    }
+}
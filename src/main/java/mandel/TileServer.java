@@ -0,0 +1,325 @@
+// Serve tiles of the tile cache's lattice as PNG over HTTP, for a
+// slippy map viewer:
+//
+//      GET /{zoom}/{x}/{y}.png?limit=N
+//
+// Tile (x, y) at zoom z is the square WORLD_SIZE / 2^z across whose
+// upper left corner is x and y squares right of and below the
+// corner of the lattice, as in TileCache.  Each render thread has a
+// renderer of its own, all sharing one tile cache, so tiles already
+// rendered come straight back out of it.
+//
+// Requests are taken by a cached thread pool and the rendering is
+// handed to a fixed pool with a bounded queue.  Requests for a tile
+// that is already being rendered wait for that render instead of
+// starting another.  When the queue is full the answer is 503 with
+// a Retry-After header, so clients back off instead of piling up.
+//
+//      java mandel.TileServer [-port n] [-threads n] [-queue n]
+//                             [-limit n] [-cache dir]
+
+package mandel;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class TileServer {
+
+    public static final int     DEFAULT_PORT = 8080;
+    public static final int     DEFAULT_LIMIT = 256;
+    public static final int     MAX_LIMIT = 100000;
+
+    // Deepest zoom level served.  Tile corners are worked out in
+    // double, which is exact down to about here.
+    public static final int     MAX_ZOOM = 40;
+
+    static final Pattern        TILE_PATH = Pattern.compile("/(\\d+)/(-?\\d+)/(-?\\d+)\\.png");
+
+    HttpServer                                          server;
+    ExecutorService                                     requests;
+    ThreadPoolExecutor                                  renders;
+    ConcurrentHashMap<String, CompletableFuture<byte[]>> inFlight;
+    ThreadLocal<MandelRenderer>                         renderers;
+    TileCache                                           cache;
+    RenderStats                                         stats;
+    AtomicLong                                          coalesced;
+    int                                                 defaultLimit;
+
+
+    // Render on threads threads, with at most queue tiles waiting.
+    public TileServer(int port, int threads, int queue, TileCache c, int limit) throws IOException {
+        cache = c;
+        stats = new RenderStats();
+        coalesced = new AtomicLong();
+        defaultLimit = limit;
+        inFlight = new ConcurrentHashMap<>();
+        renders = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                                         new ArrayBlockingQueue<>(queue), new ThreadPoolExecutor.AbortPolicy());
+        requests = Executors.newCachedThreadPool();
+        renderers = ThreadLocal.withInitial(() -> {
+                        MandelRenderer  r = new MandelRenderer(TileCache.TILE_SIZE, TileCache.TILE_SIZE);
+
+                        r.setDeepZoom(true);
+                        r.setTileCache(cache);
+                        r.setStats(stats);
+                        return r;
+                    });
+
+        server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(requests);
+    }
+
+
+    public void start() {
+        server.start();
+    }
+
+
+    public void stop() {
+        server.stop(0);
+        renders.shutdownNow();
+        requests.shutdownNow();
+    }
+
+
+    public int getPort() { return server.getAddress().getPort(); }
+    public RenderStats getStats() { return stats; }
+    public long getCoalesced() { return coalesced.get(); }
+
+
+    void handle(HttpExchange ex) throws IOException {
+        try
+        {
+            String      path = ex.getRequestURI().getPath();
+            Matcher     m = TILE_PATH.matcher(path);
+
+            if (!ex.getRequestMethod().equals("GET"))
+            {
+                reply(ex, 405, "text/plain", "Only GET is supported\n".getBytes(StandardCharsets.US_ASCII));
+            }
+            else if (path.equals("/stats"))
+            {
+                String  summary = stats.summary() + ", " + coalesced + " coalesced\n";
+
+                reply(ex, 200, "text/plain", summary.getBytes(StandardCharsets.US_ASCII));
+            }
+            else if (!m.matches())
+            {
+                reply(ex, 404, "text/plain", "Tiles are at /{zoom}/{x}/{y}.png\n".getBytes(StandardCharsets.US_ASCII));
+            }
+            else
+            {
+                serveTile(ex, m);
+            }
+        }
+        finally
+        {
+            ex.close();
+        }
+    }
+
+
+    void serveTile(HttpExchange ex, Matcher m) throws IOException {
+        int     zoom;
+        long    x;
+        long    y;
+        int     limit;
+
+        try
+        {
+            zoom = Integer.parseInt(m.group(1));
+            x = Long.parseLong(m.group(2));
+            y = Long.parseLong(m.group(3));
+            limit = limitParameter(ex.getRequestURI().getQuery());
+        }
+        catch (NumberFormatException e)
+        {
+            reply(ex, 400, "text/plain", "Bad tile or limit\n".getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+
+        if (zoom > MAX_ZOOM || limit < 1 || limit > MAX_LIMIT)
+        {
+            reply(ex, 400, "text/plain", ("Zoom must be at most " + MAX_ZOOM + " and limit from 1 to "
+                                          + MAX_LIMIT + "\n").getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+
+        try
+        {
+            byte    png[] = tile(zoom, x, y, limit).get();
+
+            ex.getResponseHeaders().set("Cache-Control", "max-age=86400");
+            reply(ex, 200, "image/png", png);
+        }
+        catch (RejectedExecutionException e)
+        {
+            ex.getResponseHeaders().set("Retry-After", "1");
+            reply(ex, 503, "text/plain", "Too many tiles waiting to be rendered\n".getBytes(StandardCharsets.US_ASCII));
+        }
+        catch (ExecutionException e)
+        {
+            reply(ex, 500, "text/plain", (e.getCause() + "\n").getBytes(StandardCharsets.US_ASCII));
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    // The PNG of a tile, rendered once however many requests want it
+    // at the same time.  Throws RejectedExecutionException if the
+    // render queue is full.
+    CompletableFuture<byte[]> tile(int zoom, long x, long y, int limit) {
+        String                      key = zoom + "/" + x + "/" + y + "/" + limit;
+        CompletableFuture<byte[]>   mine = new CompletableFuture<>();
+        CompletableFuture<byte[]>   running = inFlight.putIfAbsent(key, mine);
+
+        if (running != null)
+        {
+            coalesced.incrementAndGet();
+            return running;
+        }
+
+        try
+        {
+            renders.execute(() -> {
+                try
+                {
+                    mine.complete(render(zoom, x, y, limit));
+                }
+                catch (Throwable t)
+                {
+                    mine.completeExceptionally(t);
+                }
+                finally
+                {
+                    inFlight.remove(key, mine);
+                }
+            });
+        }
+        catch (RejectedExecutionException e)
+        {
+            inFlight.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+
+        return mine;
+    }
+
+
+    byte[] render(int zoom, long x, long y, int limit) throws IOException {
+        MandelRenderer          r = renderers.get();
+        double                  side = Math.scalb(TileCache.WORLD_SIZE, -zoom);
+        double                  left = TileCache.WORLD_LEFT + x * side;
+        double                  top = TileCache.WORLD_TOP - y * side;
+        int                     size = TileCache.TILE_SIZE;
+        int                     pixels[] = new int [size];
+        ByteArrayOutputStream   out = new ByteArrayOutputStream();
+
+        r.setLimit(limit);
+        r.initialize(new Complex(left, top), new Complex(left + side, top - side));
+        r.drawPicture();
+
+        Palette                 palette = r.getPalette();
+
+        try (PngWriter png = new PngWriter(out, size, size)) {
+            for (int j = 0; j < size; j++) {
+                for (int i = 0; i < size; i++) {
+                    pixels[i] = palette.color(r.count(i, j));
+                }
+
+                png.write(pixels, 0, size);
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+
+    int limitParameter(String query) {
+        if (query != null)
+        {
+            for (String p : query.split("&")) {
+                if (p.startsWith("limit="))
+                {
+                    return Integer.parseInt(p.substring(6));
+                }
+            }
+        }
+
+        return defaultLimit;
+    }
+
+
+    static void reply(HttpExchange ex, int status, String type, byte body[]) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", type);
+        ex.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+
+    public static void main(String args[]) throws IOException {
+        int         port = DEFAULT_PORT;
+        int         threads = Runtime.getRuntime().availableProcessors();
+        int         queue = 64;
+        int         limit = DEFAULT_LIMIT;
+        String      cacheName = null;
+
+        System.setProperty("java.awt.headless", "true");
+
+        for (int a = 0; a < args.length; a++) {
+            if (args[a].equals("-port")) {
+                port = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-threads")) {
+                threads = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-queue")) {
+                queue = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-limit")) {
+                limit = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-cache")) {
+                cacheName = args[++a];
+            }
+            else {
+                System.err.println("Unknown option " + args[a]);
+                System.exit(1);
+            }
+        }
+
+        TileCache   cache = new TileCache(MandelRenderer.CACHE_TILES,
+                                          cacheName != null ? Paths.get(cacheName) : null,
+                                          MandelRenderer.CACHE_BYTES);
+        TileServer  server = new TileServer(port, threads, queue, cache, limit);
+
+        server.start();
+        System.out.println("Serving tiles on http://localhost:" + server.getPort() + "/{zoom}/{x}/{y}.png?limit=N");
+    }
+}
@@ -0,0 +1,103 @@
+// Render a picture of any size a tile at a time into a CountFile,
+// then stream it out as a PNG.
+//
+// The tiles are rendered by one engine of the tile size, given the
+// view of each tile in turn, so anything that can render one view
+// can render a picture larger than the heap: the subdivision engine,
+// the fork/join one or the tracer.  Each tile is given the corner
+// and pixel spacing of the whole picture and where it lies in it, so
+// its points are the same as those of a render of the whole.  Tiles on the right and bottom
+// edges are rendered whole and clipped.  Memory use is the engine's
+// buffers plus a few small row buffers, whatever the picture size.
+
+package mandel;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+public class TiledRender {
+
+    // Pixels colored and written per call to the PNG writer.
+    static final int    ROW_PIECE = 4096;
+
+    RenderEngine        engine;
+    CountFile           target;
+
+
+    public TiledRender(RenderEngine e, CountFile t) {
+        engine = e;
+        target = t;
+    }
+
+
+    // Render the view with upper left corner ul and lower right
+    // corner lr, mapped onto the whole of the count file the same
+    // way MandelRenderer.initialize maps it onto its buffer.
+    // Returns false if a tile did not complete.
+    public boolean render(Complex ul, Complex lr) {
+        int         width = target.getWidth();
+        int         height = target.getHeight();
+        int         tileW = engine.getWidth();
+        int         tileH = engine.getHeight();
+        double      hRe = (lr.real() - ul.real()) / width;
+        double      vIm = (lr.imag() - ul.imag()) / height;
+        int         row[] = new int [tileW];
+
+        for (int ty = 0; ty < height; ty += tileH) {
+            for (int tx = 0; tx < width; tx += tileW) {
+                int         w = Math.min(tileW, width - tx);
+                int         h = Math.min(tileH, height - ty);
+
+                engine.initialize(ul, hRe, vIm, tx, ty);
+                engine.drawPicture();
+
+                if (!engine.isComplete())
+                {
+                    return false;
+                }
+
+                for (int y = 0; y < h; y++) {
+                    for (int x = 0; x < w; x++) {
+                        row[x] = engine.count(x, y);
+                    }
+
+                    target.putRow(tx, ty + y, row, w);
+                }
+            }
+        }
+
+        return true;
+    }
+
+
+    // Color the counts with palette and write them to out as a PNG,
+    // a piece of a row at a time.  Closes out.
+    public void writePng(OutputStream out, Palette palette) throws IOException {
+        writePng(target, out, palette);
+    }
+
+
+    public static void writePng(CountFile target, OutputStream out, Palette palette) throws IOException {
+        int         width = target.getWidth();
+        int         height = target.getHeight();
+        int         counts[] = new int [ROW_PIECE];
+        int         pixels[] = new int [ROW_PIECE];
+
+        try (PngWriter png = new PngWriter(new BufferedOutputStream(out, 1 << 16), width, height)) {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x += ROW_PIECE) {
+                    int     n = Math.min(ROW_PIECE, width - x);
+
+                    target.getRow(x, y, counts, n);
+
+                    for (int i = 0; i < n; i++) {
+                        pixels[i] = palette.color(counts[i]);
+                    }
+
+                    png.write(pixels, 0, n);
+                }
+            }
+        }
+    }
+}
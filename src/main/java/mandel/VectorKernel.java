@@ -0,0 +1,173 @@
+// Lane parallel escape time kernel built on the JDK Vector API.
+//
+// A strip of pixels along a row or column is iterated a few points
+// at a time, one point per lane.  A lane drops out of the active
+// mask when its point escapes or falls in the cardioid or bulb, and
+// the loop stops when every lane is done.  The arithmetic is the
+// same as MandelRenderer.escapeVelocity, done in the same order, so
+// the counts are identical.
+//
+// Brent's cycle check does not vectorize well: saving z on a power
+// of two schedule keeps C2 from keeping the vectors in registers,
+// and it runs several times slower than no check at all.  So when
+// periodicity checking is on, lanes still running after
+// HANDOFF_ITERATIONS are finished by the scalar kernel, which does
+// the check.  Those are mostly interior points anyway.  The scalar
+// kernel carries on from where the lane got to rather than starting
+// the orbit over.
+//
+// Needs --add-modules jdk.incubator.vector when compiling and
+// running.  MandelRenderer checks for the module before using this
+// class and falls back to the scalar kernel when it is missing.
+
+package mandel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+class VectorKernel {
+
+    static final VectorSpecies<Double>  SPECIES = DoubleVector.SPECIES_PREFERRED;
+    static final int                    HANDOFF_ITERATIONS = 512;
+
+    // Where the lanes got to, unpacked for the per pixel bookkeeping.
+    // One set per thread, since strips are evaluated on every thread
+    // of a ParallelRenderer.
+    static final class Lanes {
+        double  orbitCounts[] = new double [SPECIES.length()];
+        double  cr[] = new double [SPECIES.length()];
+        double  ci[] = new double [SPECIES.length()];
+        double  zr[] = new double [SPECIES.length()];
+        double  zi[] = new double [SPECIES.length()];
+    }
+
+    static final ThreadLocal<Lanes>     LANES = ThreadLocal.withInitial(Lanes::new);
+
+
+    // Evaluate n pixels of r starting at (x0, y0) and stepping by
+    // (dx, dy), storing the counts in r's buffer where they are not
+    // already known.  This is all one method on purpose: vectors
+    // passed between methods that C2 does not inline get boxed.
+    static void escapeStrip(MandelRenderer r, int x0, int y0, int dx, int dy, int n) {
+        int             lanes = SPECIES.length();
+        int             limit = r.iterationLimit;
+        int             stop = (r.periodicityCheck ? Math.min(limit, HANDOFF_ITERATIONS) : limit);
+        boolean         cardioid = r.cardioidCheck;
+        RenderStats     stats = r.stats;
+        Lanes           scratch = LANES.get();
+        double          orbitCounts[] = scratch.orbitCounts;
+        double          lastRe[] = scratch.zr;
+        double          lastIm[] = scratch.zi;
+        boolean         keep = (r.orbits != null);
+        DoubleVector    lane = DoubleVector.zero(SPECIES).addIndex(1);
+        DoubleVector    one = DoubleVector.broadcast(SPECIES, 1.0);
+        DoubleVector    four = DoubleVector.broadcast(SPECIES, 4.0);
+        DoubleVector    interiorCount = DoubleVector.broadcast(SPECIES, (double) limit);
+
+        for (int k = 0; k < n && !r.cancelled(); k += lanes) {
+            VectorMask<Double>  active = SPECIES.indexInRange(k, n);
+            DoubleVector        xs = lane.mul((double) dx).add((double) (x0 + r.offsetX + k * dx));
+            DoubleVector        ys = lane.mul((double) dy).add((double) (y0 + r.offsetY + k * dy));
+            DoubleVector        cr = xs.mul(r.hRe).add(r.originRe).add(ys.mul(r.vRe));
+            DoubleVector        ci = xs.mul(r.hIm).add(r.originIm).add(ys.mul(r.vIm));
+            DoubleVector        zr = cr;
+            DoubleVector        zi = ci;
+            DoubleVector        zr2 = zr.mul(zr);
+            DoubleVector        zi2 = zi.mul(zi);
+            DoubleVector        orbits = DoubleVector.zero(SPECIES);
+            long                interiorLanes = 0L;
+
+            if (cardioid)
+            {
+                VectorMask<Double>  interior = insideCardioidOrBulb(cr, ci).and(active);
+
+                orbits = orbits.blend(interiorCount, interior);
+                active = active.andNot(interior);
+                interiorLanes = interior.toLong();
+            }
+
+            active = active.and(zr2.add(zi2).compare(VectorOperators.LE, four));
+
+            for (int it = 0; it < stop && active.anyTrue(); it++) {
+                zi = zr.add(zr).mul(zi).add(ci);
+                zr = zr2.sub(zi2).add(cr);
+                zr2 = zr.mul(zr);
+                zi2 = zi.mul(zi);
+                orbits = orbits.add(one, active);
+                active = active.and(zr2.add(zi2).compare(VectorOperators.LE, four));
+            }
+
+            long    handOff = (stop < limit ? active.toLong() : 0L);
+            long    reached = (stop < limit ? 0L : active.toLong());
+
+            orbits.intoArray(orbitCounts, 0);
+
+            if (keep || handOff != 0L)
+            {
+                zr.intoArray(lastRe, 0);
+                zi.intoArray(lastIm, 0);
+            }
+
+            if (handOff != 0L)
+            {
+                cr.intoArray(scratch.cr, 0);
+                ci.intoArray(scratch.ci, 0);
+            }
+
+            for (int l = 0; l < lanes && k + l < n; l++) {
+                int     x = x0 + (k + l) * dx;
+                int     y = y0 + (k + l) * dy;
+
+                if (stats != null && (interiorLanes & (1L << l)) == 0)
+                {
+                    stats.iterations.add((long) orbitCounts[l]);
+                }
+
+                if (r.count(x, y) != MandelRenderer.UNKNOWN)
+                {
+                    continue;
+                }
+
+                if ((handOff & (1L << l)) != 0)
+                {
+                    // The iterations so far are counted above, so the
+                    // scalar kernel only counts the rest
+                    r.setCount(x, y, r.iterate(scratch.cr[l], scratch.ci[l], lastRe[l], lastIm[l],
+                                               (int) orbitCounts[l], y * r.width + x));
+                }
+                else
+                {
+                    r.setCount(x, y, (int) orbitCounts[l]);
+
+                    if (keep && (interiorLanes & (1L << l)) != 0)
+                    {
+                        r.keepOrbit(y * r.width + x, MandelRenderer.INTERIOR, 0.0);
+                    }
+                    else if (keep && (reached & (1L << l)) != 0)
+                    {
+                        r.keepOrbit(y * r.width + x, lastRe[l], lastIm[l]);
+                    }
+                }
+
+                if (stats != null)
+                {
+                    stats.pixelsEvaluated.increment();
+                }
+            }
+        }
+    }
+
+
+    static VectorMask<Double> insideCardioidOrBulb(DoubleVector cr, DoubleVector ci) {
+        DoubleVector    ci2 = ci.mul(ci);
+        DoubleVector    xq = cr.sub(0.25);
+        DoubleVector    q = xq.mul(xq).add(ci2);
+        DoubleVector    xb = cr.add(1.0);
+
+        return q.mul(q.add(xq)).compare(VectorOperators.LE, ci2.mul(0.25))
+               .or(xb.mul(xb).add(ci2).compare(VectorOperators.LE, 0.0625));
+    }
+
+}
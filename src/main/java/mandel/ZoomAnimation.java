@@ -0,0 +1,452 @@
+// Render the frames of a zoom into one point as a batch, for
+// making videos.
+//
+//      java mandel.ZoomAnimation -center re im [-from size] [-to size]
+//                                [-frames n] [-limit first last]
+//                                [-size w h] [-threads n] [-noreuse]
+//                                [-o frame%05d.png | -raw file]
+//
+// The view is square in scale, from size units across down to the
+// -to size, and the limit rises geometrically from first to last.
+// Frames are written as a numbered PNG sequence, or with -raw as
+// one stream of 24 bit RGB frames ("-" for standard output), e.g.
+// for ffmpeg -f rawvideo -pix_fmt rgb24.
+//
+// Frames are worked out on this thread and written out on another,
+// with FRAMES_AHEAD frames allowed to wait in between, so frame n+1
+// is rendered while frame n is being encoded.
+//
+// The scale goes down by exactly 2^(1/K) from one frame to the next,
+// K being picked so the zoom ends as near to -to as it can.  Then
+// frame n + K shows frame n at twice the size, and every other pixel
+// across and down of it falls on a pixel of frame n, as with a
+// window zoom.  Those pixels are filled in from frame n unless the
+// point had not escaped by frame n's limit, so a quarter of each
+// frame comes for free.  -noreuse turns that off.
+
+package mandel;
+
+import java.io.BufferedOutputStream;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+public class ZoomAnimation {
+
+    // Frames colored and waiting to be written.
+    static final int    FRAMES_AHEAD = 2;
+
+    // Milliseconds between checks that the writer is still there
+    // while waiting for room in the queue
+    static final long   WRITER_CHECK = 200;
+
+    // Bytes the kept frames may take up before reuse is turned off
+    static final long   KEEP_BYTES = 128L << 20;
+
+
+    // One colored frame on its way to be written.
+    static final class Frame {
+        int     index;
+        int     pixels[];
+
+        Frame(int i, int p[]) {
+            index = i;
+            pixels = p;
+        }
+    }
+
+
+    MandelRenderer      renderer;
+    BigDecimal          centerRe;
+    BigDecimal          centerIm;
+    double              from;
+    int                 frames;
+    int                 perHalving;     // K: frames from one scale to half of it
+    int                 firstLimit;
+    int                 lastLimit;
+    boolean             reuse;
+    int                 kept[][];       // middle quarter of the last K frames
+    int                 keptLimit[];
+    long                reused;
+
+
+    public ZoomAnimation(MandelRenderer r, BigDecimal re, BigDecimal im, double fromSize, double toSize,
+                         int n, int limit1, int limit2) {
+        renderer = r;
+        centerRe = re;
+        centerIm = im;
+        from = fromSize;
+        frames = n;
+        firstLimit = limit1;
+        lastLimit = limit2;
+        reuse = true;
+        reused = 0;
+
+        double  halvings = Math.log(fromSize / toSize) / Math.log(2.0);
+
+        perHalving = (int) Math.max(1, Math.round((n - 1) / Math.max(halvings, 1.0e-9)));
+        kept = null;
+        keptLimit = null;
+    }
+
+
+    public void setReuse(boolean on)
+    {
+        reuse = on;
+    }
+
+
+    public int getFramesPerHalving() { return perHalving; }
+    public long getKeptBytes() { return 4L * perHalving * (keepRight() - keepLeft()) * (keepBottom() - keepTop()); }
+    public long getReusedPixels() { return reused; }
+
+
+    // Width of frame n in the plane: halved exactly every K frames.
+    public double size(int n) {
+        return Math.scalb(from * Math.pow(2.0, -(double) (n % perHalving) / perHalving), -(n / perHalving));
+    }
+
+
+    // Iteration limit for frame n.
+    public int limit(int n) {
+        if (frames <= 1)
+        {
+            return firstLimit;
+        }
+
+        return (int) Math.round(firstLimit * Math.pow((double) lastLimit / firstLimit, (double) n / (frames - 1)));
+    }
+
+
+    // Render every frame and hand it to out, which runs on a thread
+    // of its own.  Returns once the last frame has been written, or
+    // throws what stopped the writer.
+    public void run(FrameSink out) throws IOException, InterruptedException {
+        BlockingQueue<Frame>    queue = new ArrayBlockingQueue<>(FRAMES_AHEAD);
+        IOException             failure[] = new IOException [1];
+        Thread                  writer = new Thread(() -> {
+                                    try
+                                    {
+                                        for (;;) {
+                                            Frame   f = queue.take();
+
+                                            if (f.pixels == null)
+                                            {
+                                                return;
+                                            }
+
+                                            out.write(f.index, f.pixels);
+                                        }
+                                    }
+                                    catch (IOException e)
+                                    {
+                                        failure[0] = e;
+                                    }
+                                    catch (InterruptedException e)
+                                    {
+                                        Thread.currentThread().interrupt();
+                                    }
+                                }, "frame writer");
+
+        if (reuse && getKeptBytes() > KEEP_BYTES)
+        {
+            System.err.println("Not reusing frames: keeping " + perHalving + " of them would take "
+                               + (getKeptBytes() >> 20) + " MB");
+            reuse = false;
+        }
+
+        writer.start();
+
+        try
+        {
+            for (int n = 0; n < frames && writer.isAlive(); n++) {
+                hand(queue, new Frame(n, render(n)), writer);
+            }
+
+            hand(queue, new Frame(-1, null), writer);
+            writer.join();
+        }
+        finally
+        {
+            if (writer.isAlive())
+            {
+                writer.interrupt();
+                writer.join();
+            }
+
+            out.close();
+        }
+
+        if (failure[0] != null)
+        {
+            throw failure[0];
+        }
+    }
+
+
+    // Queue a frame for the writer, giving up if the writer has
+    // stopped and will never make room for it.
+    static void hand(BlockingQueue<Frame> queue, Frame f, Thread writer) throws InterruptedException {
+        while (!queue.offer(f, WRITER_CHECK, TimeUnit.MILLISECONDS)) {
+            if (!writer.isAlive())
+            {
+                return;
+            }
+        }
+    }
+
+
+    // Work out frame n and return its colors.
+    int[] render(int n) {
+        int     width = renderer.getWidth();
+        int     height = renderer.getHeight();
+        int     limit = limit(n);
+
+        renderer.setLimit(limit);
+        renderer.initialize(centerRe, centerIm, size(n));
+
+        if (reuse)
+        {
+            if (kept == null)
+            {
+                kept = new int [perHalving][];
+                keptLimit = new int [perHalving];
+            }
+
+            int     slot = n % perHalving;
+
+            if (kept[slot] != null)
+            {
+                seed(kept[slot], keptLimit[slot]);
+            }
+        }
+
+        renderer.drawPicture();
+
+        if (reuse)
+        {
+            int     slot = n % perHalving;
+            int     left = keepLeft();
+            int     top = keepTop();
+            int     across = keepRight() - left;
+            int     down = keepBottom() - top;
+
+            if (kept[slot] == null)
+            {
+                kept[slot] = new int [across * down];
+            }
+
+            for (int y = 0; y < down; y++) {
+                System.arraycopy(renderer.counts, (top + y) * width + left, kept[slot], y * across, across);
+            }
+
+            keptLimit[slot] = limit;
+        }
+
+        int     pixels[] = new int [width * height];
+
+        renderer.getPalette().recolor(renderer.counts, pixels);
+        return pixels;
+    }
+
+
+    // The middle of a frame that the frame K later shows, which is
+    // all that is kept of it: pixels keepLeft() up to keepRight() across
+    // and keepTop() up to keepBottom() down.
+    int keepLeft() { return (renderer.getWidth() / 2 + 1) / 2; }
+    int keepRight() { return (renderer.getWidth() + renderer.getWidth() / 2 + 1) / 2; }
+    int keepTop() { return (renderer.getHeight() / 2 + 1) / 2; }
+    int keepBottom() { return (renderer.getHeight() + renderer.getHeight() / 2 + 1) / 2; }
+
+
+    // Fill in the pixels of this frame that lie on pixels of the frame
+    // K back, which had the same center at twice the scale.  Pixel
+    // width / 2 is the center in both, so pixel x of the old frame is
+    // pixel 2x - width / 2 of the new one.  Counts that reached the
+    // old limit may escape under the new one and are left alone, and
+    // so are counts the new limit would cut off, if it is lower.
+    void seed(int old[], int oldLimit) {
+        int     below = Math.min(oldLimit, renderer.getLimit());
+        int     width = renderer.getWidth();
+        int     height = renderer.getHeight();
+        int     counts[] = renderer.counts;
+        int     left = keepLeft();
+        int     top = keepTop();
+        int     across = keepRight() - left;
+
+        for (int y = top; y < keepBottom(); y++) {
+            int     ny = 2 * y - height / 2;
+
+            for (int x = left; x < keepRight(); x++) {
+                int     c = old[(y - top) * across + x - left];
+
+                if (c < below)
+                {
+                    counts[ny * width + 2 * x - width / 2] = c;
+                    reused++;
+                }
+            }
+        }
+    }
+
+
+    // Where the frames go.  write is called on the writer thread, one
+    // frame at a time and in order.
+    public interface FrameSink {
+        void write(int index, int pixels[]) throws IOException;
+        void close() throws IOException;
+    }
+
+
+    // Each frame to its own PNG, named by formatting the frame
+    // number into pattern.
+    public static FrameSink pngSequence(String pattern, int width, int height) {
+        return new FrameSink() {
+            public void write(int index, int pixels[]) throws IOException {
+                try (PngWriter png = new PngWriter(new BufferedOutputStream(
+                                                       new FileOutputStream(String.format(pattern, index)), 1 << 16),
+                                                   width, height)) {
+                    png.write(pixels, 0, pixels.length);
+                }
+            }
+
+            public void close() {
+            }
+        };
+    }
+
+
+    // Every frame, as 8 bit R, G and B, one after the other.
+    public static FrameSink rawStream(OutputStream o) {
+        OutputStream    out = new BufferedOutputStream(o, 1 << 16);
+
+        return new FrameSink() {
+            byte    rgb[] = new byte [0];
+
+            public void write(int index, int pixels[]) throws IOException {
+                if (rgb.length != 3 * pixels.length)
+                {
+                    rgb = new byte [3 * pixels.length];
+                }
+
+                for (int i = 0; i < pixels.length; i++) {
+                    rgb[3 * i] = (byte) (pixels[i] >> 16);
+                    rgb[3 * i + 1] = (byte) (pixels[i] >> 8);
+                    rgb[3 * i + 2] = (byte) pixels[i];
+                }
+
+                out.write(rgb);
+            }
+
+            public void close() throws IOException {
+                out.close();
+            }
+        };
+    }
+
+
+    public static void main(String args[]) throws IOException, InterruptedException {
+        int         w = 640;
+        int         h = 480;
+        BigDecimal  re = null;
+        BigDecimal  im = null;
+        double      fromSize = 4.0;
+        double      toSize = 1.0e-6;
+        int         frames = 300;
+        int         limit1 = 256;
+        int         limit2 = 4096;
+        int         threads = 0;
+        boolean     reuse = true;
+        String      pattern = "frame%05d.png";
+        String      rawName = null;
+
+        System.setProperty("java.awt.headless", "true");
+
+        for (int a = 0; a < args.length; a++) {
+            if (args[a].equals("-center")) {
+                re = new BigDecimal(args[++a]);
+                im = new BigDecimal(args[++a]);
+            }
+            else if (args[a].equals("-from")) {
+                fromSize = Double.parseDouble(args[++a]);
+            }
+            else if (args[a].equals("-to")) {
+                toSize = Double.parseDouble(args[++a]);
+            }
+            else if (args[a].equals("-frames")) {
+                frames = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-limit")) {
+                limit1 = Integer.parseInt(args[++a]);
+                limit2 = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-size")) {
+                w = Integer.parseInt(args[++a]);
+                h = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-threads")) {
+                threads = Integer.parseInt(args[++a]);
+            }
+            else if (args[a].equals("-noreuse")) {
+                reuse = false;
+            }
+            else if (args[a].equals("-o")) {
+                pattern = args[++a];
+            }
+            else if (args[a].equals("-raw")) {
+                rawName = args[++a];
+            }
+            else {
+                System.err.println("Unknown option " + args[a]);
+                System.exit(1);
+            }
+        }
+
+        if (re == null)
+        {
+            System.err.println("No -center given");
+            System.exit(1);
+        }
+
+        MandelRenderer  renderer = (threads > 0 ? new ParallelRenderer(w, h, threads) : new MandelRenderer(w, h));
+        ZoomAnimation   zoom = new ZoomAnimation(renderer, re, im, fromSize, toSize, frames, limit1, limit2);
+        FrameSink       sink;
+
+        zoom.setReuse(reuse);
+
+        if (rawName == null)
+        {
+            sink = pngSequence(pattern, w, h);
+        }
+        else if (rawName.equals("-"))
+        {
+            // Not System.out, which would swallow a broken pipe
+            sink = rawStream(new FileOutputStream(FileDescriptor.out));
+        }
+        else
+        {
+            sink = rawStream(new FileOutputStream(rawName));
+        }
+
+        long    start = System.nanoTime();
+
+        zoom.run(sink);
+
+        double  minutes = (System.nanoTime() - start) / 6.0e10;
+
+        if (renderer instanceof ParallelRenderer)
+        {
+            ((ParallelRenderer) renderer).shutdown();
+        }
+
+        System.err.printf("%d frames of %dx%d in %.1f s: %.1f frames/minute; %d frames per halving, "
+                          + "ends %.3g across; %d pixels carried over%n",
+                          frames, w, h, minutes * 60.0, frames / minutes, zoom.getFramesPerHalving(),
+                          zoom.size(frames - 1), zoom.getReusedPixels());
+    }
+}
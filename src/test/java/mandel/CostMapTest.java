@@ -0,0 +1,113 @@
+// Cost maps put the work where the boundary is, read the same counts
+// from a rendered frame as a probe finds, and make the coordinator
+// hand out the expensive tiles first.
+
+package mandel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CostMapTest {
+
+    static final int        SIZE = 256;
+    static final int        LIMIT = 1000;
+    static final int        CELL = 32;
+    static final Complex    UL = new Complex(-2.1, 1.5);
+    static final Complex    LR = new Complex(0.9, -1.5);
+
+    @TempDir
+    Path    dir;
+
+
+    CountFile rendered() throws IOException {
+        CountFile       frame = new CountFile(dir.resolve("frame"), SIZE, SIZE);
+        MandelRenderer  engine = new MandelRenderer(SIZE, SIZE);
+
+        engine.setLimit(LIMIT);
+        assertTrue(new TiledRender(engine, frame).render(UL, LR));
+        return frame;
+    }
+
+
+    @Test
+    void boundaryCostsMoreThanFarOutside() {
+        CostMap     m = CostMap.probe(UL, LR, SIZE, SIZE, LIMIT, CELL);
+        double      corner = m.cost(0, 0, CELL, CELL);
+        int         dearest = 0;
+
+        for (int k = 1; k < m.cost.length; k++) {
+            if (m.cost[k] > m.cost[dearest])
+            {
+                dearest = k;
+            }
+        }
+
+        // The dearest cell is one the boundary goes through, charged
+        // for every pixel
+        assertTrue(m.cost[dearest] > 100 * corner, m.cost[dearest] + " against " + corner);
+        assertEquals(m.work[dearest] * CELL * CELL, m.cost[dearest]);
+        assertEquals(m.total(), m.cost(0, 0, SIZE, SIZE), 1e-6 * m.total());
+    }
+
+
+    @Test
+    void previousFrameGivesTheProbedCounts() throws IOException {
+        CostMap     probed = CostMap.probe(UL, LR, SIZE, SIZE, LIMIT, CELL);
+
+        try (CountFile frame = rendered()) {
+            CostMap     read = CostMap.fromFrame(frame, UL, LR, UL, LR, SIZE, SIZE, LIMIT, CELL);
+
+            assertArrayEquals(probed.counts, read.counts);
+        }
+    }
+
+
+    @Test
+    void expensiveTilesAreSplitAndHandedOutFirst() throws IOException {
+        CostMap     costs = CostMap.probe(UL, LR, SIZE, SIZE, LIMIT, CELL);
+
+        try (CountFile target = new CountFile(dir.resolve("target"), SIZE, SIZE)) {
+            RenderCoordinator       c = new RenderCoordinator(List.of(InetSocketAddress.createUnresolved("a", 1),
+                                                                      InetSocketAddress.createUnresolved("b", 1)),
+                                                              target);
+            List<TileProtocol.Job>  jobs = c.plan(UL, LR, LIMIT, 128, costs);
+            int                     covered[] = new int [SIZE * SIZE];
+            boolean                 split = false;
+
+            for (int k = 0; k < jobs.size(); k++) {
+                TileProtocol.Job    j = jobs.get(k);
+
+                assertTrue(k == 0 || jobs.get(k - 1).cost >= j.cost, "out of order at " + k);
+                split |= j.width < 128;
+
+                for (int y = j.y; y < j.y + j.height; y++) {
+                    for (int x = j.x; x < j.x + j.width; x++) {
+                        covered[y * SIZE + x]++;
+                    }
+                }
+            }
+
+            assertTrue(split, "no tile was split");
+
+            for (int n : covered) {
+                assertEquals(1, n);
+            }
+
+            // Without costs the tiles go in rows, unsplit
+            List<TileProtocol.Job>  plain = c.plan(UL, LR, LIMIT, 128, null);
+
+            assertEquals(4, plain.size());
+            assertEquals(128, plain.get(1).x);
+            assertEquals(0, plain.get(1).y);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+// DoubleDouble against BigDecimal, which is exact for sums and
+// products of doubles.
+
+package mandel;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class DoubleDoubleTest {
+
+    // A double-double holds about 106 bits; allow a few bits less
+    static final double TOLERANCE = 0x1p-100;
+
+    static final int    TRIALS = 10000;
+
+
+    static DoubleDouble random(Random r) {
+        double  hi = (r.nextDouble() - 0.5) * Math.scalb(1.0, r.nextInt(8) - 4);
+
+        return new DoubleDouble(hi, Math.ulp(hi) * (r.nextDouble() - 0.5));
+    }
+
+
+    static void assertClose(BigDecimal exact, DoubleDouble d, BigDecimal scale) {
+        double  error = exact.subtract(d.toBigDecimal()).abs().doubleValue();
+
+        assertTrue(error <= TOLERANCE * scale.abs().doubleValue(),
+                   "off by " + error + " from " + exact + ": " + d);
+    }
+
+
+    @Test
+    void addMatchesBigDecimal() {
+        Random  r = new Random(1);
+
+        for (int i = 0; i < TRIALS; i++) {
+            DoubleDouble    a = random(r);
+            DoubleDouble    b = random(r);
+            BigDecimal      exact = a.toBigDecimal().add(b.toBigDecimal());
+
+            assertClose(exact, new DoubleDouble(a).add(b),
+                        a.toBigDecimal().abs().max(b.toBigDecimal().abs()));
+        }
+    }
+
+
+    @Test
+    void multiplyMatchesBigDecimal() {
+        Random  r = new Random(2);
+
+        for (int i = 0; i < TRIALS; i++) {
+            DoubleDouble    a = random(r);
+            DoubleDouble    b = random(r);
+            BigDecimal      exact = a.toBigDecimal().multiply(b.toBigDecimal());
+
+            assertClose(exact, new DoubleDouble(a).multiply(b), exact);
+            assertClose(a.toBigDecimal().multiply(a.toBigDecimal()), new DoubleDouble(a).square(),
+                        a.toBigDecimal().pow(2));
+        }
+    }
+
+
+    @Test
+    void productIsExact() {
+        Random  r = new Random(3);
+
+        for (int i = 0; i < TRIALS; i++) {
+            double  a = r.nextDouble() * 1000.0;
+            double  b = r.nextDouble() - 0.5;
+
+            assertTrue(new BigDecimal(a).multiply(new BigDecimal(b))
+                       .compareTo(DoubleDouble.product(a, b).toBigDecimal()) == 0);
+        }
+    }
+
+
+    @Test
+    void valueOfKeepsTheDigitsADoubleLoses() {
+        BigDecimal      b = new BigDecimal("-0.7436438870371587254419876543");
+        DoubleDouble    d = DoubleDouble.valueOf(b);
+
+        assertClose(b, d, b);
+        assertTrue(b.subtract(new BigDecimal(d.hi), MathContext.DECIMAL128).abs().doubleValue() > 1.0e-20);
+    }
+}
@@ -0,0 +1,34 @@
+// Cycling the palette either way keeps every color a valid opaque
+// color, and cycling back returns the palette started from.
+
+package mandel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class PaletteTest {
+
+    static final int    LIMIT = 1000;
+
+
+    @Test
+    void cyclingBackwardsKeepsColorsOpaque() {
+        Palette     p = new Palette(LIMIT).cycled(-1).cycled(-300);
+
+        for (int v = 0; v <= LIMIT; v++) {
+            assertEquals(0xFF, p.color(v) >>> 24, "count " + v);
+        }
+    }
+
+
+    @Test
+    void cyclingBackUndoesCycling() {
+        Palette     p = new Palette(LIMIT);
+        Palette     q = p.cycled(-7).cycled(Integer.MAX_VALUE).cycled(7).cycled(-Integer.MAX_VALUE);
+
+        for (int v = 0; v <= LIMIT; v++) {
+            assertEquals(p.color(v), q.color(v), "count " + v);
+        }
+    }
+}
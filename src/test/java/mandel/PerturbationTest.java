@@ -0,0 +1,63 @@
+// Deep renders by perturbation, and giving way to a newer render
+// while the reference orbit is still being worked out.
+
+package mandel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class PerturbationTest {
+
+    static final int    SIZE = 64;
+
+
+    // A view 1e-30 across around -1, which is inside the period 2
+    // bulb, so the reference orbit runs all the way to the limit.
+    static MandelRenderer deep(int limit) {
+        MandelRenderer  r = new MandelRenderer(SIZE, SIZE);
+
+        r.setDeepZoom(true);
+        r.setLimit(limit);
+        r.initialize(new BigDecimal("-1"), BigDecimal.ZERO, 1.0e-30);
+        return r;
+    }
+
+
+    @Test
+    void deepViewIsRenderedByPerturbation() {
+        MandelRenderer  r = deep(500);
+
+        r.drawPicture();
+
+        assertEquals(MandelRenderer.PERTURBATION, r.precision);
+        assertFalse(r.deep.stale);
+        assertTrue(r.complete);
+
+        for (int c : r.counts) {
+            assertEquals(500, c);
+        }
+    }
+
+
+    // At this limit the orbit would take minutes in BigDecimal
+    @Test
+    void supersededRenderStopsWorkingOutTheOrbit() {
+        MandelRenderer  r = deep(50000000);
+        AtomicLong      latest = new AtomicLong(2);
+
+        r.setGenerations(latest);
+        r.startGeneration(1);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> r.drawPicture());
+        assertFalse(r.complete);
+        assertTrue(r.deep.stale);
+    }
+}
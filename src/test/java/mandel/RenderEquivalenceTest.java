@@ -0,0 +1,210 @@
+// The engines and options that are meant to give exactly the counts
+// of a plain sequential render, checked on a few views.
+
+package mandel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class RenderEquivalenceTest {
+
+    static final int    SIZE = 128;
+
+    // Subdivision and tracing can miss areas too thin to see, and
+    // which ones depends on how the picture is cut up
+    static final int    MISSES = SIZE * SIZE / 1000;
+
+
+    // Upper left and lower right corners and a limit that shows the
+    // view properly.  The whole set and the needle are mirrored in
+    // the real axis, the others are not.
+    static double[] view(String name) {
+        switch (name) {
+            case "seahorse":
+                return new double[] { -0.76, 0.13, -0.73, 0.10, 1000 };
+            case "spiral":
+                return new double[] { -0.7445, 0.1220, -0.7425, 0.1200, 3000 };
+            case "needle":
+                return new double[] { -1.8, 0.05, -1.7, -0.03, 1000 };
+            default:
+                return new double[] { -2.1, 2.1, 2.1, -2.1, 256 };
+        }
+    }
+
+
+    static int[] render(MandelRenderer r, double v[], int limit) {
+        r.setLimit(limit);
+        r.initialize(new Complex(v[0], v[1]), new Complex(v[2], v[3]));
+        r.drawPicture();
+        return r.counts.clone();
+    }
+
+
+    static int[] plain(double v[]) {
+        return render(new MandelRenderer(SIZE, SIZE), v, (int) v[4]);
+    }
+
+
+    // Every pixel evaluated: subdivision with leaves the size of the
+    // picture, and no mirroring.
+    static int[] bruteForce(double v[]) {
+        MandelRenderer  r = new MandelRenderer(SIZE, SIZE);
+
+        r.setSymmetry(false);
+        r.setLeafSize(SIZE);
+        return render(r, v, (int) v[4]);
+    }
+
+
+    static int differences(int a[], int b[]) {
+        int     n = 0;
+
+        for (int i = 0; i < a.length; i++) {
+            n += (a[i] != b[i] ? 1 : 0);
+        }
+
+        return n;
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(strings = { "whole", "seahorse", "spiral" })
+    void parallelMatchesSequential(String name) {
+        double              v[] = view(name);
+        ParallelRenderer    parallel = new ParallelRenderer(SIZE, SIZE, 3);
+
+        try
+        {
+            assertArrayEquals(plain(v), render(parallel, v, (int) v[4]));
+        }
+        finally
+        {
+            parallel.shutdown();
+        }
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(strings = { "whole", "seahorse", "spiral" })
+    void vectorMatchesScalar(String name) {
+        assumeTrue(MandelRenderer.vectorKernelAvailable());
+
+        double          v[] = view(name);
+        MandelRenderer  vector = new MandelRenderer(SIZE, SIZE);
+
+        vector.setVectorKernel(true);
+        assertArrayEquals(plain(v), render(vector, v, (int) v[4]));
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(strings = { "whole", "seahorse", "spiral" })
+    void raisedLimitMatchesFreshRender(String name) {
+        double          v[] = view(name);
+        MandelRenderer  raised = new MandelRenderer(SIZE, SIZE);
+        MandelRenderer  fresh = new MandelRenderer(SIZE, SIZE);
+
+        raised.setResumable(true);
+        render(raised, v, (int) v[4] / 4);
+        raised.raiseLimit((int) v[4]);
+
+        assertArrayEquals(render(fresh, v, (int) v[4]), raised.counts);
+    }
+
+
+    // Several tasks keep orbits at once
+    @ParameterizedTest
+    @ValueSource(strings = { "whole", "seahorse", "spiral" })
+    void parallelRaisedLimitMatchesFreshRender(String name) {
+        double              v[] = view(name);
+        ParallelRenderer    raised = new ParallelRenderer(SIZE, SIZE, 3);
+
+        try
+        {
+            raised.setResumable(true);
+            render(raised, v, (int) v[4] / 4);
+            raised.raiseLimit((int) v[4]);
+
+            assertArrayEquals(plain(v), raised.counts);
+        }
+        finally
+        {
+            raised.shutdown();
+        }
+    }
+
+
+    @ParameterizedTest
+    @ValueSource(strings = { "whole", "seahorse", "spiral" })
+    void progressiveMatchesPlain(String name) {
+        double          v[] = view(name);
+        MandelRenderer  progressive = new MandelRenderer(SIZE, SIZE);
+
+        progressive.setProgressive(true);
+        assertArrayEquals(plain(v), render(progressive, v, (int) v[4]));
+    }
+
+
+    // Without mirroring, so that rings of one count that never reach
+    // the edge of the picture have to be found by the tracer itself.
+    @ParameterizedTest
+    @ValueSource(strings = { "whole", "seahorse", "spiral" })
+    void tracerMatchesBruteForce(String name) {
+        double          v[] = view(name);
+        BoundaryTracer  tracer = new BoundaryTracer(SIZE, SIZE);
+
+        tracer.setSymmetry(false);
+
+        int             wrong = differences(bruteForce(v), render(tracer, v, (int) v[4]));
+
+        assertTrue(wrong <= MISSES, wrong + " pixels differ");
+    }
+
+
+    // The needle straddles the axis off center, so only part of the
+    // rendered half is copied.
+    @ParameterizedTest
+    @ValueSource(strings = { "whole", "needle" })
+    void mirroredMatchesUnmirrored(String name) {
+        double          v[] = view(name);
+        MandelRenderer  unmirrored = new MandelRenderer(SIZE, SIZE);
+        MandelRenderer  mirrored = new MandelRenderer(SIZE, SIZE);
+
+        unmirrored.setSymmetry(false);
+
+        int             wrong = differences(render(unmirrored, v, (int) v[4]), render(mirrored, v, (int) v[4]));
+
+        assertTrue(mirrored.symmetricHalf() != null, "not mirrored");
+        assertTrue(wrong <= MISSES, wrong + " pixels differ");
+    }
+
+
+    // Disks are only filled where the estimate says the whole disk is
+    // on one side of the boundary, so the counts should not change;
+    // exterior disks only count in a membership render.
+    @ParameterizedTest
+    @ValueSource(strings = { "whole", "needle" })
+    void distanceFillMatchesPlain(String name) {
+        double          v[] = view(name);
+
+        for (boolean membership : new boolean[] { false, true }) {
+            MandelRenderer  plain = new MandelRenderer(SIZE, SIZE);
+            MandelRenderer  filled = new MandelRenderer(SIZE, SIZE);
+            RenderStats     stats = new RenderStats();
+
+            plain.setMembership(membership);
+            filled.setMembership(membership);
+            filled.setDistanceFill(true);
+            filled.setStats(stats);
+
+            int             wrong = differences(render(plain, v, (int) v[4]), render(filled, v, (int) v[4]));
+
+            assertTrue(stats.getPixelsEstimated() > 0, "no disks filled");
+            assertTrue(wrong <= MISSES, wrong + " pixels differ");
+        }
+    }
+}
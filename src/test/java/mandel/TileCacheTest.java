@@ -0,0 +1,86 @@
+// Tiles put in the cache come back, from memory and from disk, and
+// the directory scan copes with files that are not tiles.
+
+package mandel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TileCacheTest {
+
+    @TempDir
+    Path    dir;
+
+
+    static int[] tile(long seed) {
+        int     t[] = new int [TileCache.TILE_SIZE * TileCache.TILE_SIZE];
+        Random  r = new Random(seed);
+
+        for (int i = 0; i < t.length; i++) {
+            t[i] = (i % 5 == 0 ? MandelRenderer.UNKNOWN : r.nextInt(1000));
+        }
+
+        return t;
+    }
+
+
+    @Test
+    void tilesComeBackFromMemoryAndDisk() throws IOException {
+        TileCache       cache = new TileCache(4, dir, 1L << 30);
+        TileCache.Key   k = new TileCache.Key(3, -2, 5, 500, 0, 3);
+        int             t[] = tile(1);
+
+        cache.put(k, t);
+        assertSame(t, cache.get(k));
+        assertEquals(1, cache.getMemoryHits());
+
+        TileCache       reopened = new TileCache(4, dir, 1L << 30);
+
+        assertArrayEquals(t, reopened.get(k));
+        assertEquals(1, reopened.getDiskHits());
+    }
+
+
+    @Test
+    void keysDifferingOnlyInVariantAreDifferentTiles() throws IOException {
+        TileCache   cache = new TileCache(4, dir, 1L << 30);
+
+        cache.put(new TileCache.Key(3, 1, 1, 500, 0, 3), tile(2));
+        assertNull(cache.get(new TileCache.Key(3, 1, 1, 500, 0, 11)));
+    }
+
+
+    @Test
+    void diskIsTrimmedToItsLimit() throws IOException {
+        TileCache   cache = new TileCache(1, dir, 1L);
+
+        cache.put(new TileCache.Key(3, 1, 1, 500, 0, 3), tile(3));
+        cache.put(new TileCache.Key(3, 1, 2, 500, 0, 3), tile(4));
+
+        assertEquals(0, cache.getDiskBytes());
+        assertNull(cache.get(new TileCache.Key(3, 1, 1, 500, 0, 3)));
+    }
+
+
+    @Test
+    void strayFilesAreSkipped() throws IOException {
+        Files.createFile(dir.resolve("junk.tile"));
+        Files.createFile(dir.resolve("1_2_3_4_5.tile"));
+        Files.createFile(dir.resolve("a_b_c_d_e_f.tile"));
+
+        TileCache   cache = new TileCache(4, dir, 1L << 30);
+
+        assertEquals(0, cache.getDiskBytes());
+        assertNull(cache.get(new TileCache.Key(1, 2, 3, 4, 5, 0)));
+    }
+}
@@ -0,0 +1,96 @@
+// Jobs and results written by one side of TileProtocol come out the
+// same on the other.
+
+package mandel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.junit.jupiter.api.Test;
+
+class TileProtocolTest {
+
+    static DataInputStream reader(ByteArrayOutputStream bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+
+    @Test
+    void jobRoundTrip() throws IOException {
+        TileProtocol.Job        j = new TileProtocol.Job();
+        ByteArrayOutputStream   bytes = new ByteArrayOutputStream();
+
+        j.id = 7;
+        j.re = -0.743643887037151;
+        j.im = 0.131825904205330;
+        j.hRe = 0x1p-40;
+        j.vIm = -0x1p-40;
+        j.limit = 5000;
+        j.width = 256;
+        j.height = 128;
+        TileProtocol.writeJob(new DataOutputStream(bytes), j);
+
+        DataInputStream     in = reader(bytes);
+
+        assertEquals(TileProtocol.JOB, in.readByte());
+
+        TileProtocol.Job    k = TileProtocol.readJob(in);
+
+        assertEquals(j.id, k.id);
+        assertEquals(j.re, k.re);
+        assertEquals(j.im, k.im);
+        assertEquals(j.hRe, k.hRe);
+        assertEquals(j.vIm, k.vIm);
+        assertEquals(j.limit, k.limit);
+        assertEquals(j.width, k.width);
+        assertEquals(j.height, k.height);
+    }
+
+
+    @Test
+    void resultRoundTrip() throws IOException {
+        int                     n = 300 * 200;
+        int                     counts[] = new int [n];
+        int                     back[] = new int [n];
+        Random                  r = new Random(4);
+        ByteArrayOutputStream   bytes = new ByteArrayOutputStream();
+
+        for (int i = 0; i < n; i++) {
+            counts[i] = (i % 7 == 0 ? MandelRenderer.UNKNOWN : r.nextInt(100000));
+        }
+
+        TileProtocol.writeResult(new DataOutputStream(bytes), 12, counts, n, new Deflater());
+
+        DataInputStream     in = reader(bytes);
+
+        assertEquals(TileProtocol.RESULT, in.readByte());
+        assertEquals(12, TileProtocol.readResult(in, back, n, new Inflater()));
+        assertArrayEquals(counts, back);
+    }
+
+
+    @Test
+    void shortResultIsAnError() throws IOException {
+        int                     counts[] = new int [100];
+        ByteArrayOutputStream   bytes = new ByteArrayOutputStream();
+
+        Arrays.fill(counts, 3);
+        TileProtocol.writeResult(new DataOutputStream(bytes), 1, counts, 100, new Deflater());
+
+        DataInputStream     in = reader(bytes);
+
+        in.readByte();
+        assertThrows(IOException.class, () -> TileProtocol.readResult(in, new int [200], 200, new Inflater()));
+    }
+}
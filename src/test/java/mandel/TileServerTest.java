@@ -0,0 +1,121 @@
+// Requests for a tile already being rendered share that render, and
+// requests past the queue are turned away rather than piling up.
+
+package mandel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TileServerTest {
+
+    TileServer      server;
+    CountDownLatch  release;
+
+
+    // One render thread and room for one waiting tile, in memory
+    @BeforeEach
+    void start() throws IOException {
+        server = new TileServer(0, 1, 1, new TileCache(16, null, 0L), 64);
+        release = new CountDownLatch(1);
+        server.start();
+    }
+
+
+    @AfterEach
+    void stop() {
+        release.countDown();
+        server.stop();
+    }
+
+
+    // Keep the render thread busy until release is counted down, so
+    // tiles asked for meanwhile are still waiting.
+    void holdRenderThread() {
+        server.renders.execute(() -> {
+            try
+            {
+                release.await();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+
+    @Test
+    void requestsForTheSameTileShareOneRender() throws Exception {
+        holdRenderThread();
+
+        CompletableFuture<byte[]>   first = server.tile(2, 1, 1, 64);
+        CompletableFuture<byte[]>   second = server.tile(2, 1, 1, 64);
+
+        assertSame(first, second);
+        assertEquals(1, server.getCoalesced());
+
+        release.countDown();
+        first.get();
+        assertEquals(1, server.getStats().getRenders());
+    }
+
+
+    @Test
+    void differentLimitsAreDifferentTiles() throws Exception {
+        holdRenderThread();
+
+        CompletableFuture<byte[]>   low = server.tile(2, 1, 1, 64);
+
+        assertThrows(RejectedExecutionException.class, () -> server.tile(2, 1, 1, 128));
+        assertEquals(0, server.getCoalesced());
+
+        release.countDown();
+        low.get();
+    }
+
+
+    @Test
+    void fullQueueAnswers503() throws Exception {
+        holdRenderThread();
+        server.tile(2, 1, 1, 64);
+
+        HttpURLConnection   c = get("/2/0/0.png");
+
+        assertEquals(503, c.getResponseCode());
+        assertEquals("1", c.getHeaderField("Retry-After"));
+    }
+
+
+    @Test
+    void tileIsServedAsPng() throws Exception {
+        HttpURLConnection   c = get("/1/0/0.png?limit=100");
+
+        assertEquals(200, c.getResponseCode());
+        assertEquals("image/png", c.getContentType());
+
+        try (InputStream in = c.getInputStream()) {
+            byte    header[] = in.readNBytes(4);
+
+            assertArrayEquals(new byte[] { (byte) 0x89, 'P', 'N', 'G' }, header);
+        }
+    }
+
+
+    HttpURLConnection get(String path) throws IOException {
+        return (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+    }
+}
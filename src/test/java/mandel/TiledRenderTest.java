@@ -0,0 +1,84 @@
+// A picture rendered a tile at a time into a count file comes out
+// the same as the whole picture rendered in one go.
+
+package mandel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class TiledRenderTest {
+
+    // Not a multiple of the tile size, so the last tiles are clipped
+    static final int    SIZE = 300;
+    static final int    TILE = 128;
+
+    @TempDir
+    Path    dir;
+
+
+    // With leaves the size of the picture every pixel is evaluated,
+    // which leaves nothing to differ but the points themselves.
+    int[] tiled(double v[], boolean symmetry, int leaf) throws IOException {
+        MandelRenderer  engine = new MandelRenderer(TILE, TILE);
+        int             counts[] = new int [SIZE * SIZE];
+
+        engine.setSymmetry(symmetry);
+        engine.setLeafSize(leaf);
+        engine.setLimit((int) v[4]);
+
+        try (CountFile target = new CountFile(dir.resolve("counts"), SIZE, SIZE)) {
+            assertTrue(new TiledRender(engine, target).render(new Complex(v[0], v[1]), new Complex(v[2], v[3])));
+
+            for (int y = 0; y < SIZE; y++) {
+                int     row[] = new int [SIZE];
+
+                target.getRow(0, y, row, SIZE);
+                System.arraycopy(row, 0, counts, y * SIZE, SIZE);
+            }
+        }
+
+        return counts;
+    }
+
+
+    static int[] whole(double v[], boolean symmetry, int leaf) {
+        MandelRenderer  r = new MandelRenderer(SIZE, SIZE);
+
+        r.setSymmetry(symmetry);
+        r.setLeafSize(leaf);
+        return RenderEquivalenceTest.render(r, v, (int) v[4]);
+    }
+
+
+    // Every tile is worked out on the pixel grid of the whole picture
+    @ParameterizedTest
+    @ValueSource(strings = { "whole", "seahorse", "spiral", "needle" })
+    void tilesLandOnTheWholePictureGrid(String name) throws IOException {
+        double  v[] = RenderEquivalenceTest.view(name);
+
+        assertArrayEquals(whole(v, false, SIZE), tiled(v, false, SIZE));
+    }
+
+
+    // Tiles are cut up differently from the whole picture, and those
+    // on the axis are mirrored on their own, so subdivision may miss
+    // different thin areas
+    @ParameterizedTest
+    @ValueSource(strings = { "whole", "seahorse", "spiral", "needle" })
+    void subdividedTilesMatchWholePicture(String name) throws IOException {
+        double  v[] = RenderEquivalenceTest.view(name);
+
+        for (boolean symmetry : new boolean[] { false, true }) {
+            int     wrong = RenderEquivalenceTest.differences(whole(v, symmetry, 0), tiled(v, symmetry, 0));
+
+            assertTrue(wrong <= SIZE * SIZE / 1000, wrong + " pixels differ");
+        }
+    }
+}
@@ -0,0 +1,66 @@
+// Frames whose pixels are partly carried over from the frame a
+// halving back come out as they do rendered from scratch.
+
+package mandel;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class ZoomAnimationTest {
+
+    static final int    SIZE = 128;
+    static final int    FRAMES = 7;
+
+
+    // The frames of a zoom from 0.04 down to 0.005 into the seahorse
+    // valley, two frames to a halving, every pixel evaluated.
+    static List<int[]> frames(boolean reuse, long reused[]) throws IOException, InterruptedException {
+        MandelRenderer  r = new MandelRenderer(SIZE, SIZE);
+        ZoomAnimation   zoom = new ZoomAnimation(r, new BigDecimal("-0.7436"), new BigDecimal("0.1318"),
+                                                 0.04, 0.005, FRAMES, 500, 2000);
+        List<int[]>     out = new ArrayList<>();
+
+        r.setSymmetry(false);
+        r.setLeafSize(SIZE);
+        zoom.setReuse(reuse);
+        zoom.run(new ZoomAnimation.FrameSink() {
+                     public void write(int index, int pixels[]) {
+                         out.add(pixels);
+                     }
+
+                     public void close() {
+                     }
+                 });
+
+        reused[0] = zoom.getReusedPixels();
+        return out;
+    }
+
+
+    @Test
+    void reusedFramesMatchFreshOnes() throws IOException, InterruptedException {
+        long        reused[] = new long [1];
+        List<int[]> fresh = frames(false, reused);
+        List<int[]> carried = frames(true, reused);
+
+        assertEquals(FRAMES, fresh.size());
+        assertEquals(FRAMES, carried.size());
+        assertTrue(reused[0] > SIZE * SIZE / 8, reused[0] + " pixels carried over");
+
+        // The corners of the two frames are rounded separately, so a
+        // carried over pixel can be an ulp off the point the fresh
+        // render looks at, which shows right by the boundary
+        for (int n = 0; n < FRAMES; n++) {
+            int     missed = RenderEquivalenceTest.differences(fresh.get(n), carried.get(n));
+
+            assertTrue(missed <= RenderEquivalenceTest.MISSES, missed + " pixels differ in frame " + n);
+        }
+    }
+}